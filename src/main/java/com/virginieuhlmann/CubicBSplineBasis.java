@@ -0,0 +1,57 @@
+package com.virginieuhlmann;
+
+/**
+ * Cubic B-spline basis. The curve is twice continuously differentiable and
+ * approximates its control polygon.
+ */
+final class CubicBSplineBasis extends SplineBasis {
+
+	// ============================================================================
+	// PUBLIC METHODS
+
+	@Override
+	int support() {
+		return 4;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	@Override
+	String name(int c) {
+		return SplineLUTCache.BSPLINE3;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Cubic B-spline.
+	 */
+	@Override
+	double value(int c, double t) {
+		double BSplineValue = 0.0;
+		if ((t >= 0) & (t <= 1)) {
+			BSplineValue = t * t * t / 6.0;
+		} else if ((t > 1) & (t <= 2)) {
+			t = t - 2;
+			BSplineValue = 2.0 / 3.0 - t * t * (1 + t / 2.0);
+		} else if ((t > 2) & (t <= 3)) {
+			t = t - 2;
+			BSplineValue = 2.0 / 3.0 - t * t * (1 - t / 2.0);
+		} else if ((t > 3) & (t <= 4)) {
+			t = 4 - t;
+			BSplineValue = t * t * t / 6.0;
+		}
+		return (BSplineValue);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Computes the spline coefficients given the points the spline must
+	 * interpolate.
+	 */
+	@Override
+	void prefilter(double[] s) {
+		prefilterSymmetric(s, 2.0 / 3.0);
+	}
+}
@@ -0,0 +1,194 @@
+package com.virginieuhlmann;
+
+/**
+ * Exponential B-spline basis of order three or four. Its basis function
+ * reproduces the sinusoids of period M, so that the curve can represent circles
+ * and ellipses exactly with M nodes. The basis of order four reproduces the
+ * lines as well, and yields smoother curves.
+ */
+final class ExponentialSplineBasis extends SplineBasis {
+
+	/** Number of nodes. */
+	private final int M_;
+	/** Order of the basis. */
+	private final int order_;
+	/** PI/M. */
+	private final double PIM_;
+	/** 2*PI/M. */
+	private final double PI2M_;
+
+	// ============================================================================
+	// PUBLIC METHODS
+
+	/**
+	 * Constructor of the basis of order three.
+	 */
+	ExponentialSplineBasis(int M) {
+		this(M, 3);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Constructor. The order must be three or four.
+	 */
+	ExponentialSplineBasis(int M, int order) {
+		M_ = M;
+		order_ = order;
+		PIM_ = Math.PI / M;
+		PI2M_ = 2 * PIM_;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	@Override
+	int support() {
+		return order_;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	@Override
+	String name(int c) {
+		return (order_ == 3) ? SplineLUTCache.ESPLINE3 : SplineLUTCache.ESPLINE4;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	@Override
+	int dependencyOnM() {
+		return M_;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	@Override
+	double value(int c, double t) {
+		return (order_ == 3) ? ESpline3(t) : ESpline4(t);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Computes the spline coefficients given the points the spline must
+	 * interpolate.
+	 */
+	@Override
+	void prefilter(double[] s) {
+		prefilterSymmetric(s, value(0, order_ / 2.0));
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * The pieces of order three lie in the span of 1, cos(2*PI*t/M) and
+	 * sin(2*PI*t/M); those of order four need t as well.
+	 */
+	@Override
+	int localDimension() {
+		return order_;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Evaluates 1, cos(2*PI*t/M), sin(2*PI*t/M) and, for order four, t.
+	 */
+	@Override
+	void localFunctions(double t, double[] phi) {
+		phi[0] = 1.0;
+		phi[1] = Math.cos(PI2M_ * t);
+		phi[2] = Math.sin(PI2M_ * t);
+		if (order_ == 4) {
+			phi[3] = t;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+
+	@Override
+	double evaluatePiece(double[] a, double t) {
+		double v = a[0] + a[1] * Math.cos(PI2M_ * t) + a[2] * Math.sin(PI2M_ * t);
+		if (order_ == 4) {
+			v += a[3] * t;
+		}
+		return (v);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Steps the sinusoids from one sample to the next by a rotation, so that no
+	 * trigonometric function is evaluated inside the loop.
+	 */
+	@Override
+	void evaluatePiece(double[] a, int S, double[] out, int offset) {
+		final double cosd = Math.cos(PI2M_ / S);
+		final double sind = Math.sin(PI2M_ / S);
+		final double slope = (order_ == 4) ? a[3] / S : 0.0;
+		double cos = 1.0;
+		double sin = 0.0;
+		double aux;
+		for (int j = 0; j < S; j++) {
+			out[offset + j] = a[0] + a[1] * cos + a[2] * sin + slope * j;
+			aux = cos * cosd - sin * sind;
+			sin = sin * cosd + cos * sind;
+			cos = aux;
+		}
+	}
+
+	// ============================================================================
+	// PRIVATE METHODS
+
+	/**
+	 * Exponential spline of order 3.
+	 */
+	private double ESpline3(double t) {
+		double ESplineValue = 0.0;
+		double eta = 2 * (1 - Math.cos(PI2M_)) / (PI2M_ * PI2M_);
+		if ((t >= 0) & (t <= 1)) {
+			ESplineValue = (2 * (1 - Math.cos(PIM_ * t) * Math.cos(PIM_ * t)));
+		} else if ((t > 1) & (t <= 2)) {
+			ESplineValue = (Math.cos(PI2M_ * (t - 2)) + Math.cos(PI2M_ * (t - 1)) - 2 * Math.cos(PI2M_));
+		} else if ((t > 2) & (t <= 3)) {
+			ESplineValue = (1 - Math.cos(PI2M_ * (t - 3)));
+		}
+		ESplineValue = ESplineValue / (PI2M_ * PI2M_ * eta);
+		return (ESplineValue);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Exponential spline of order 4, the convolution of the exponential spline of
+	 * order 3 with the unit box.
+	 */
+	private double ESpline4(double t) {
+		if ((t <= 0) | (t >= 4)) {
+			return (0.0);
+		}
+		return ((ESpline3Integral(t) - ESpline3Integral(t - 1)) / (2 * (1 - Math.cos(PI2M_))));
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Integral from zero to t of the exponential spline of order 3, up to the
+	 * normalization factor 2 * (1 - cos(2*PI/M)) of ESpline3.
+	 */
+	private double ESpline3Integral(double t) {
+		final double w = PI2M_;
+		final double sinw = Math.sin(w);
+		final double cosw = Math.cos(w);
+		if (t <= 0) {
+			return (0.0);
+		} else if (t <= 1) {
+			return (t - Math.sin(w * t) / w);
+		} else if (t <= 2) {
+			return (1 - sinw / w + (Math.sin(w * (t - 2)) + sinw + Math.sin(w * (t - 1))) / w - 2 * cosw * (t - 1));
+		} else if (t <= 3) {
+			return (1 + sinw / w - 2 * cosw + (t - 2) - (Math.sin(w * (t - 3)) + sinw) / w);
+		}
+		return (2 - 2 * cosw);
+	}
+}
@@ -0,0 +1,114 @@
+package com.virginieuhlmann;
+
+/**
+ * Cubic Hermite spline basis. Each node carries the position of the curve,
+ * weighted by the first basis function, and its tangent, weighted by the second
+ * one. The curve interpolates the positions and the tangents.
+ */
+final class HermiteSplineBasis extends SplineBasis {
+
+	// ============================================================================
+	// PUBLIC METHODS
+
+	@Override
+	int support() {
+		return 2;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	@Override
+	int coefficientsPerNode() {
+		return 2;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	@Override
+	int shift() {
+		return 1;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	@Override
+	String name(int c) {
+		return (c == 0) ? SplineLUTCache.HSPLINE31 : SplineLUTCache.HSPLINE32;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Both basis functions are cubic on each unit interval.
+	 */
+	@Override
+	int localDimension() {
+		return 4;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	@Override
+	double value(int c, double t) {
+		return (c == 0) ? HSpline31(t) : HSpline32(t);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the length of the Bezier control polygon of the l-th segment, which
+	 * bounds the length of the segment.
+	 */
+	@Override
+	double segmentLengthBound(double[] x, double[] y, int M, int l) {
+		final int l1 = (l + 1) % M;
+		final double p0x = x[l];
+		final double p0y = y[l];
+		final double p1x = x[l1];
+		final double p1y = y[l1];
+
+		final double ax = p0x + x[l + M] / 3.0;
+		final double ay = p0y + y[l + M] / 3.0;
+		final double bx = p1x - x[l1 + M] / 3.0;
+		final double by = p1y - y[l1 + M] / 3.0;
+
+		return Math.sqrt((ax - p0x) * (ax - p0x) + (ay - p0y) * (ay - p0y))
+				+ Math.sqrt((bx - ax) * (bx - ax) + (by - ay) * (by - ay))
+				+ Math.sqrt((p1x - bx) * (p1x - bx) + (p1y - by) * (p1y - by));
+	}
+
+	// ============================================================================
+	// PRIVATE METHODS
+
+	/**
+	 * First Cubic Hermite spline.
+	 */
+	private double HSpline31(double x) {
+		x = x - 1;
+
+		double val = 0.0;
+		if (x >= 0 && x <= 1) {
+			val = (1.0 + (2.0 * x)) * (x - 1) * (x - 1);
+		} else if (x < 0 && x >= -1) {
+			val = (1.0 - (2.0 * x)) * (x + 1) * (x + 1);
+		}
+		return val;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Second Cubic Hermite spline.
+	 */
+	private double HSpline32(double x) {
+		x = x - 1;
+
+		double val = 0.0;
+		if (x >= 0 && x <= 1) {
+			val = x * (x - 1) * (x - 1);
+		} else if (x < 0 && x >= -1) {
+			val = x * (x + 1) * (x + 1);
+		}
+		return val;
+	}
+}
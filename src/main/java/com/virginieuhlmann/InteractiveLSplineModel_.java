@@ -1,6 +1,8 @@
 package com.virginieuhlmann;
 
 import java.awt.Checkbox;
+import java.awt.Choice;
+import java.awt.Polygon;
 import java.awt.TextField;
 import java.io.File;
 import java.nio.file.FileSystems;
@@ -34,6 +36,7 @@ import ij.plugin.frame.Recorder;
 import ij.plugin.frame.RoiManager;
 import ij.process.ImageProcessor;
 import com.virginieuhlmann.snake2D.Snake2DKeeper;
+import com.virginieuhlmann.snake2D.Snake2DLBFGSOptimizer;
 import com.virginieuhlmann.snake2D.Snake2DNode;
 import com.virginieuhlmann.snake2D.Snake2DScale;
 
@@ -61,26 +64,80 @@ public class InteractiveLSplineModel_ implements ExtendedPlugInFilter {
 
 	/** Label for the number of snake control points. */
 	private static final String NUM_NODES = "Control_points";
+	/** Label for the sampling rate at which the contour is discretized. */
+	private static final String SAMPLING_RATE = "Sampling_rate";
+	/** Label for the degree of the B-spline. */
+	private static final String DEGREE = "Degree";
+	/** Choices for the degree of the B-spline. */
+	private static final String[] DEGREES = { "1", "3" };
+	/** Label for the adaptive discretization of the contour. */
+	private static final String ADAPTIVE = "Adaptive_sampling";
+	/** Label for the merging of the skin samples that fall on the same pixel. */
+	private static final String SIMPLIFY = "Simplify_skin";
+	/** Label for the removal of the collinear skin samples. */
+	private static final String COLLINEAR = "Remove_collinear";
 	/** Label for the saving into the RoiManager of ImageJ. */
 	private static final String SAVE = "Save_ROI";
 	/** Label for the saving as XML file. */
 	private static final String SAVEXML = "Save_XML";
+	/** Label for the editing of every ROI of the RoiManager of ImageJ. */
+	private static final String ALLROIS = "All_ROIs";
+	/** Label for the optimization of the contours during the interaction. */
+	private static final String OPTIMIZE = "Optimize";
 	/** Textfield for the XML source file. */
 	private static final String XMLSOURCE = "XML_Source";
 	/** Textfield for the XML output file. */
 	private static final String XMLDEST = "XML_Output";
+	/** Label for the processing of several images without interaction. */
+	private static final String BATCH = "Batch";
+	/** Choices for the processing of several images without interaction. */
+	private static final String[] BATCHES = { "None", "Stack", "Folder" };
+	/** Textfield for the folder of images processed in batch. */
+	private static final String INPUTFOLDER = "Input_folder";
+	/** Label for the number of threads of the batch processing. */
+	private static final String THREADS = "Threads";
+	/** Label for the number of starts of the optimization in batch. */
+	private static final String STARTS = "Starts";
 
 	/** Number of control points. */
 	private static int M_ = DEFAULT_NUM_NODES;
+	/** Sampling rate at which the contour is discretized. */
+	private static int samplingRate_ = InteractiveLSplineModel.DEFAULTSAMPLINGRATE;
+	/** Degree of the B-spline. */
+	private static int degree_ = InteractiveLSplineModel.DEFAULTDEGREE;
+	/** If true, the number of samples of each segment depends on its length. */
+	private static boolean adaptive_ = false;
+	/** If true, skin samples falling on the same pixel are merged. */
+	private static boolean simplify_ = false;
+	/** If true, skin samples collinear with their neighbors are removed. */
+	private static boolean collinear_ = false;
 	/** If true, the result is stored in the RoiManager of ImageJ. */
 	private static boolean saveROI_ = true;
 	/** If true, the result is saved as XML file. */
 	private static boolean saveXML_ = false;
+	/** If true, one contour is edited for every ROI of the RoiManager. */
+	private static boolean allROIs_ = false;
+	/** If true, the contours can be optimized during the interaction. */
+	private static boolean optimize_ = false;
 
 	/** Path to the XML source file. */
 	private static String xmlSource_ = "";
 	/** Path to the XML output file. */
 	private static String xmlDest_ = "myspline.xml";
+	/** Images fitted without interaction, one of BATCHES. */
+	private static String batch_ = BATCHES[0];
+	/** Path to the folder of images processed in batch. */
+	private static String inputFolder_ = "";
+	/** Nodes and degree of the B-spline of a model loaded from an XML file. */
+	private static final class SavedModel {
+		Snake2DNode[] nodes_ = null;
+		int degree_ = 0;
+	}
+
+	/** Number of threads of the batch processing. */
+	private static int threads_ = Runtime.getRuntime().availableProcessors();
+	/** Number of starts of the optimization of each contour in batch. */
+	private static int starts_ = 1;
 
 	// ============================================================================
 	// PUBLIC METHODS
@@ -91,61 +148,130 @@ public class InteractiveLSplineModel_ implements ExtendedPlugInFilter {
 		final Vector<TextField> numbers = dialog_.getNumericFields();
 		@SuppressWarnings("unchecked")
 		final Vector<Checkbox> checkboxes = dialog_.getCheckboxes();
+		@SuppressWarnings("unchecked")
+		final Vector<Choice> choices = dialog_.getChoices();
 
 		xmlSource_ = dialog_.getNextString();
 		M_ = (new Integer(numbers.elementAt(0).getText())).intValue();
-		saveROI_ = checkboxes.elementAt(0).getState();
-		saveXML_ = checkboxes.elementAt(1).getState();
+		samplingRate_ = (new Integer(numbers.elementAt(1).getText())).intValue();
+		degree_ = (new Integer(choices.elementAt(0).getSelectedItem())).intValue();
+		adaptive_ = checkboxes.elementAt(0).getState();
+		simplify_ = checkboxes.elementAt(1).getState();
+		collinear_ = checkboxes.elementAt(2).getState();
+		saveROI_ = checkboxes.elementAt(3).getState();
+		saveXML_ = checkboxes.elementAt(4).getState();
+		allROIs_ = checkboxes.elementAt(5).getState();
+		optimize_ = checkboxes.elementAt(6).getState();
 		xmlDest_ = dialog_.getNextString();
+		batch_ = choices.elementAt(1).getSelectedItem();
+		inputFolder_ = dialog_.getNextString();
+		threads_ = (new Integer(numbers.elementAt(2).getText())).intValue();
+		starts_ = (new Integer(numbers.elementAt(3).getText())).intValue();
 
 		Recorder.setCommand("InteractiveLSplineModel ");
 		Recorder.recordOption(XMLSOURCE, xmlSource_);
 		Recorder.recordOption(NUM_NODES, "" + M_);
+		Recorder.recordOption(SAMPLING_RATE, "" + samplingRate_);
+		Recorder.recordOption(DEGREE, "" + degree_);
+		Recorder.recordOption(ADAPTIVE, "" + adaptive_);
+		Recorder.recordOption(SIMPLIFY, "" + simplify_);
+		Recorder.recordOption(COLLINEAR, "" + collinear_);
 		Recorder.recordOption(SAVE, "" + saveROI_);
 		Recorder.recordOption(SAVEXML, "" + saveXML_);
+		Recorder.recordOption(ALLROIS, "" + allROIs_);
+		Recorder.recordOption(OPTIMIZE, "" + optimize_);
 		Recorder.recordOption(XMLDEST, xmlDest_);
+		Recorder.recordOption(BATCH, batch_);
+		Recorder.recordOption(INPUTFOLDER, inputFolder_);
+		Recorder.recordOption(THREADS, "" + threads_);
+		Recorder.recordOption(STARTS, "" + starts_);
 
 		if (saveROI_)
 			Recorder.saveCommand();
 
-		Snake2DNode[] priorNodes = null;
+		SavedModel[] priorModels = null;
 		if (!xmlSource_.isEmpty()) {
 			try {
-				priorNodes = loadModelFromXML(xmlSource_);
-				M_ = priorNodes.length;
+				priorModels = loadModelsFromXML(xmlSource_);
+				M_ = priorModels[0].nodes_.length;
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
 		}
 
-		InteractiveLSplineModel myModel = new InteractiveLSplineModel(M_, ip.getWidth(), ip.getHeight(), imp_.getRoi());
+		Roi[] initialContours = { imp_.getRoi() };
+		if (allROIs_) {
+			final RoiManager roiManager = RoiManager.getInstance();
+			if (priorModels != null) {
+				IJ.log("The XML source replaces the ROIs of the RoiManager.");
+			} else if ((roiManager != null) && (roiManager.getCount() > 0)) {
+				initialContours = roiManager.getRoisAsArray();
+			}
+		}
 
-		if (priorNodes != null) {
+		if (priorModels != null) {
 			IJ.log("Setting initial nodes from XML...");
-			myModel.setNodes(priorNodes);
+		}
+
+		// The models and the energy of the current image are created before any
+		// batch or session, so that invalid parameters are reported once instead
+		// of by every thread.
+		final InteractiveLSplineModel[] models;
+		SplineEnergy energy = null;
+		try {
+			models = createModels(initialContours, priorModels, ip.getWidth(), ip.getHeight());
+			if (optimize_ && batch_.equals(BATCHES[0])) {
+				energy = new SplineEnergy(ip);
+			}
+		} catch (IllegalArgumentException e) {
+			IJ.error(e.getMessage());
+			return;
+		}
+
+		if (!batch_.equals(BATCHES[0])) {
+			runBatch(initialContours, priorModels);
+			return;
 		}
 
 		Snake2DKeeper keeper = new Snake2DKeeper();
-		keeper.interact(myModel, imp_);
+		boolean canceled = false;
+		if (optimize_) {
+			// The optimizing session handles one contour, so each contour is
+			// edited and optimized in turn.
+			for (int n = 0; (n < models.length) && !canceled; n++) {
+				models[n].setEnergy(energy);
+				keeper.interactAndOptimize(models[n], imp_, new Snake2DLBFGSOptimizer());
+				models[n].setEnergy(null);
+				canceled = models[n].isCanceledByUser();
+			}
+		} else {
+			keeper.interact(models, imp_);
+			canceled = models[0].isCanceledByUser();
+		}
 
-		if (!myModel.isCanceledByUser()) {
+		if (!canceled) {
 			if (saveROI_) {
 				RoiManager roiManager = RoiManager.getInstance();
 				if (roiManager == null)
 					roiManager = new RoiManager();
 
-				Snake2DScale[] skin = myModel.getScales();
-				PolygonRoi roi = new PolygonRoi(skin[1], Roi.TRACED_ROI);
-				if (saveROI_)
+				for (int n = 0; n < models.length; n++) {
+					Snake2DScale[] skin = models[n].getScales();
+					PolygonRoi roi = new PolygonRoi(new Polygon(skin[0].xpoints, skin[0].ypoints, skin[0].npoints),
+							Roi.TRACED_ROI);
 					roiManager.addRoi(roi);
-				imp_.setRoi(roi);
+					imp_.setRoi(roi);
+				}
 			}
 
 			if (saveXML_ && !xmlDest_.isEmpty()) {
-				try {
-					saveModelToXML(xmlDest_, myModel, imp_);
-				} catch (Exception e) {
-					e.printStackTrace();
+				for (int n = 0; n < models.length; n++) {
+					try {
+						final String filename = (models.length == 1) ? xmlDest_ : numberedPath(xmlDest_, n + 1);
+						saveModelToXML(filename, models[n], imp_);
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
 				}
 			}
 		}
@@ -171,9 +297,20 @@ public class InteractiveLSplineModel_ implements ExtendedPlugInFilter {
 	public int showDialog(final ImagePlus imp, final String command, final PlugInFilterRunner pfr) {
 		dialog_.addStringField(XMLSOURCE, xmlSource_, 30);
 		dialog_.addNumericField(NUM_NODES, M_, 0);
+		dialog_.addNumericField(SAMPLING_RATE, samplingRate_, 0);
+		dialog_.addChoice(DEGREE, DEGREES, "" + degree_);
+		dialog_.addCheckbox(ADAPTIVE, adaptive_);
+		dialog_.addCheckbox(SIMPLIFY, simplify_);
+		dialog_.addCheckbox(COLLINEAR, collinear_);
 		dialog_.addCheckbox(SAVE, saveROI_);
 		dialog_.addCheckbox(SAVEXML, saveXML_);
+		dialog_.addCheckbox(ALLROIS, allROIs_);
+		dialog_.addCheckbox(OPTIMIZE, optimize_);
 		dialog_.addStringField(XMLDEST, xmlDest_, 30);
+		dialog_.addChoice(BATCH, BATCHES, batch_);
+		dialog_.addStringField(INPUTFOLDER, inputFolder_, 30);
+		dialog_.addNumericField(THREADS, threads_, 0);
+		dialog_.addNumericField(STARTS, starts_, 0);
 
 		dialog_.addPanel(new IELMCreditsButton());
 
@@ -205,17 +342,50 @@ public class InteractiveLSplineModel_ implements ExtendedPlugInFilter {
 		final Vector<Checkbox> checkboxes = dialog_.getCheckboxes();
 		@SuppressWarnings("unchecked")
 		final Vector<TextField> stringfields = dialog_.getStringFields();
+		@SuppressWarnings("unchecked")
+		final Vector<Choice> choices = dialog_.getChoices();
 
 		final TextField xmlSource = stringfields.elementAt(0);
 		final TextField numNodes = numbers.elementAt(0);
-		final Checkbox saveState = checkboxes.elementAt(0);
-		final Checkbox saveXMLState = checkboxes.elementAt(1);
-		final TextField xmlDest = stringfields.elementAt(2);
+		final TextField samplingRate = numbers.elementAt(1);
+		final Choice degree = choices.elementAt(0);
+		final Checkbox adaptiveState = checkboxes.elementAt(0);
+		final Checkbox simplifyState = checkboxes.elementAt(1);
+		final Checkbox collinearState = checkboxes.elementAt(2);
+		final Checkbox saveState = checkboxes.elementAt(3);
+		final Checkbox saveXMLState = checkboxes.elementAt(4);
+		final Checkbox allROIsState = checkboxes.elementAt(5);
+		final Checkbox optimizeState = checkboxes.elementAt(6);
+		final TextField xmlDest = stringfields.elementAt(1);
+		final Choice batch = choices.elementAt(1);
+		final TextField inputFolder = stringfields.elementAt(2);
+		final TextField threads = numbers.elementAt(2);
+		final TextField starts = numbers.elementAt(3);
 
 		final String options = Macro.getOptions();
 
 		xmlSource.setText(Macro.getValue(options, XMLSOURCE, xmlSource_));
 		numNodes.setText(Macro.getValue(options, NUM_NODES, "" + M_));
+		samplingRate.setText(Macro.getValue(options, SAMPLING_RATE, "" + samplingRate_));
+		degree.select(Macro.getValue(options, DEGREE, "" + degree_));
+		String s1 = new String(Macro.getValue(options, ADAPTIVE, "" + adaptive_));
+		if (s1.equals("true")) {
+			adaptiveState.setState(true);
+		} else {
+			adaptiveState.setState(false);
+		}
+		String s4 = new String(Macro.getValue(options, SIMPLIFY, "" + simplify_));
+		if (s4.equals("true")) {
+			simplifyState.setState(true);
+		} else {
+			simplifyState.setState(false);
+		}
+		String s6 = new String(Macro.getValue(options, COLLINEAR, "" + collinear_));
+		if (s6.equals("true")) {
+			collinearState.setState(true);
+		} else {
+			collinearState.setState(false);
+		}
 		String s2 = new String(Macro.getValue(options, SAVE, "" + saveROI_));
 		if (s2.equals("true")) {
 			saveState.setState(true);
@@ -228,7 +398,123 @@ public class InteractiveLSplineModel_ implements ExtendedPlugInFilter {
 		} else {
 			saveXMLState.setState(false);
 		}
+		String s5 = new String(Macro.getValue(options, ALLROIS, "" + allROIs_));
+		if (s5.equals("true")) {
+			allROIsState.setState(true);
+		} else {
+			allROIsState.setState(false);
+		}
+		String s7 = new String(Macro.getValue(options, OPTIMIZE, "" + optimize_));
+		if (s7.equals("true")) {
+			optimizeState.setState(true);
+		} else {
+			optimizeState.setState(false);
+		}
 		xmlDest.setText(Macro.getValue(options, XMLDEST, xmlDest_));
+		batch.select(Macro.getValue(options, BATCH, batch_));
+		inputFolder.setText(Macro.getValue(options, INPUTFOLDER, inputFolder_));
+		threads.setText(Macro.getValue(options, THREADS, "" + threads_));
+		starts.setText(Macro.getValue(options, STARTS, "" + starts_));
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Creates the models of the initial contours for an image of the given size.
+	 * If saved models are given, one model is created for each of them instead,
+	 * with its own nodes and degree.
+	 */
+	private static InteractiveLSplineModel[] createModels(Roi[] initialContours, SavedModel[] priorModels, int width,
+			int height) {
+		final int N = (priorModels != null) ? priorModels.length : initialContours.length;
+		final InteractiveLSplineModel[] models = new InteractiveLSplineModel[N];
+		for (int n = 0; n < N; n++) {
+			final int M = (priorModels != null) ? priorModels[n].nodes_.length : M_;
+			final int degree = (priorModels != null) ? priorModels[n].degree_ : degree_;
+			final Roi initialContour = (n < initialContours.length) ? initialContours[n] : null;
+			models[n] = new InteractiveLSplineModel(M, width, height, initialContour, degree, samplingRate_,
+					adaptive_);
+			models[n].setSkinSimplification(simplify_, collinear_);
+			if (priorModels != null) {
+				models[n].setNodes(priorModels[n].nodes_);
+			}
+		}
+		return (models);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Inserts the number n before the extension of the path, so that several
+	 * contours can be saved under one file name.
+	 */
+	private static String numberedPath(String path, int n) {
+		final int dot = path.lastIndexOf('.');
+		if (dot <= Math.max(path.lastIndexOf('/'), path.lastIndexOf(File.separatorChar))) {
+			return (path + "_" + n);
+		}
+		return (path.substring(0, dot) + "_" + n + path.substring(dot));
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Fits the contours to every slice of the image, or to every image of the
+	 * input folder, without interaction. The result of the i-th image is
+	 * numbered i, and is tied to the i-th slice or named after the image.
+	 */
+	private void runBatch(final Roi[] initialContours, final SavedModel[] priorModels) {
+		final boolean folder = batch_.equals(BATCHES[2]);
+		if (folder && !new File(inputFolder_).isDirectory()) {
+			IJ.error("The input folder " + inputFolder_ + " does not exist.");
+			return;
+		}
+		RoiManager manager = null;
+		if (saveROI_) {
+			manager = RoiManager.getInstance();
+			if (manager == null)
+				manager = new RoiManager();
+		}
+		final RoiManager roiManager = manager;
+
+		final SplineModelBatch batch = new SplineModelBatch(new SplineModelBatch.Factory() {
+			@Override
+			public InteractiveSplineModel[] create(int width, int height) {
+				return (createModels(initialContours, priorModels, width, height));
+			}
+		}, threads_, starts_);
+		final SplineModelBatch.Output output = new SplineModelBatch.Output() {
+			@Override
+			public void write(ImagePlus imp, int index, InteractiveSplineModel[] models) {
+				for (int n = 0; n < models.length; n++) {
+					if (roiManager != null) {
+						Snake2DScale[] skin = models[n].getScales();
+						PolygonRoi roi = new PolygonRoi(
+								new Polygon(skin[0].xpoints, skin[0].ypoints, skin[0].npoints), Roi.TRACED_ROI);
+						if (folder) {
+							roi.setName((models.length == 1) ? imp.getTitle() : imp.getTitle() + "-" + (n + 1));
+						} else {
+							roi.setPosition(index);
+						}
+						roiManager.addRoi(roi);
+					}
+					if (saveXML_ && !xmlDest_.isEmpty()) {
+						try {
+							final String filename = numberedPath(xmlDest_, index);
+							saveModelToXML((models.length == 1) ? filename : numberedPath(filename, n + 1),
+									(InteractiveLSplineModel) models[n], imp);
+						} catch (Exception e) {
+							e.printStackTrace();
+						}
+					}
+				}
+			}
+		};
+		if (folder) {
+			batch.processFolder(new File(inputFolder_), output);
+		} else {
+			batch.processStack(imp_, output);
+		}
 	}
 
 	private void saveModelToXML(String filename, InteractiveLSplineModel model, ImagePlus imp) throws Exception {
@@ -271,30 +557,35 @@ public class InteractiveLSplineModel_ implements ExtendedPlugInFilter {
 			M.appendChild(doc.createTextNode(String.valueOf(model.getNumNodes())));
 			params.appendChild(M);
 
+			Element degree = doc.createElement("degree");
+			degree.appendChild(doc.createTextNode(String.valueOf(model.getDegree())));
+			params.appendChild(degree);
+
 			Element ctrlpts = doc.createElement("control_points");
 			params.appendChild(ctrlpts);
 			DecimalFormat df = new DecimalFormat(".####");
+			final Snake2DNode[] nodes = model.getNodes();
 			for (int k = 0; k < model.getNumNodes(); k++) {
 				Element point = doc.createElement("control_point");
 				ctrlpts.appendChild(point);
 
 				Element x = doc.createElement("x");
-				String number = df.format(model.getNodes()[k].x);
+				String number = df.format(nodes[k].x);
 				x.appendChild(doc.createTextNode(number));
 				point.appendChild(x);
 
 				Element y = doc.createElement("y");
-				number = df.format(model.getNodes()[k].y);
+				number = df.format(nodes[k].y);
 				y.appendChild(doc.createTextNode(number));
 				point.appendChild(y);
 
 				Element isfrozen = doc.createElement("frozen");
-				String bool = "" + (model.getNodes()[k].frozen);
+				String bool = "" + (nodes[k].frozen);
 				isfrozen.appendChild(doc.createTextNode(bool));
 				point.appendChild(isfrozen);
 
 				Element ishidden = doc.createElement("hidden");
-				bool = "" + (model.getNodes()[k].hidden);
+				bool = "" + (nodes[k].hidden);
 				ishidden.appendChild(doc.createTextNode(bool));
 				point.appendChild(ishidden);
 			}
@@ -317,12 +608,35 @@ public class InteractiveLSplineModel_ implements ExtendedPlugInFilter {
 		}
 	}
 
-	private Snake2DNode[] loadModelFromXML(String filename) throws Exception {
+	/**
+	 * Loads the model saved in the XML file at path, or in every XML file of the
+	 * folder at path, in the order of their names.
+	 */
+	private SavedModel[] loadModelsFromXML(String path) throws Exception {
+		final File source = new File(path);
+		if (!source.isDirectory()) {
+			return (new SavedModel[] { loadModelFromXML(path) });
+		}
+		final File[] files = SplineModelBatch.listFiles(source, ".xml");
+		if (files.length == 0) {
+			throw new Exception("No XML file in " + path + ".");
+		}
+		final SavedModel[] models = new SavedModel[files.length];
+		for (int n = 0; n < files.length; n++) {
+			models[n] = loadModelFromXML(files[n].getPath());
+		}
+		return (models);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	private SavedModel loadModelFromXML(String filename) throws Exception {
 		if (filename.isEmpty()) {
 			throw new Exception("Filename is null in loadSnakeFromXML.");
 		}
 
-		Snake2DNode[] output = null;
+		SavedModel output = new SavedModel();
+		output.degree_ = degree_;
 
 		try {
 			File xml = new File(FileSystems.getDefault().getPath(filename).normalize().toAbsolutePath().toString());
@@ -335,7 +649,13 @@ public class InteractiveLSplineModel_ implements ExtendedPlugInFilter {
 			Node snakeParams = ((Element) roiNode).getElementsByTagName("snake_parameters").item(0);
 
 			String M = ((Element) snakeParams).getElementsByTagName("M").item(0).getChildNodes().item(0).getNodeValue();
-			output = new Snake2DNode[Integer.valueOf(M)];
+			output.nodes_ = new Snake2DNode[Integer.valueOf(M)];
+
+			// Files saved before the degree was stored keep the one chosen in the dialog
+			NodeList degreeList = ((Element) snakeParams).getElementsByTagName("degree");
+			if (degreeList.getLength() > 0) {
+				output.degree_ = Integer.valueOf(degreeList.item(0).getChildNodes().item(0).getNodeValue());
+			}
 
 			NodeList ctrlPtsList = ((Element) ((Element) snakeParams).getElementsByTagName("control_points").item(0))
 					.getElementsByTagName("control_point");
@@ -355,7 +675,7 @@ public class InteractiveLSplineModel_ implements ExtendedPlugInFilter {
 					String frozen = e.getElementsByTagName("frozen").item(0).getChildNodes().item(0).getNodeValue();
 					String hidden = e.getElementsByTagName("hidden").item(0).getChildNodes().item(0).getNodeValue();
 
-					output[k] = new Snake2DNode(Double.valueOf(x), Double.valueOf(y), Boolean.valueOf(frozen),
+					output.nodes_[k] = new Snake2DNode(Double.valueOf(x), Double.valueOf(y), Boolean.valueOf(frozen),
 							Boolean.valueOf(hidden));
 				}
 			}
@@ -0,0 +1,275 @@
+package com.virginieuhlmann;
+
+import java.awt.geom.Point2D;
+
+import com.virginieuhlmann.snake2D.Snake2D;
+import com.virginieuhlmann.snake2D.Snake2DNode;
+import com.virginieuhlmann.snake2D.Snake2DScale;
+
+/**
+ * Spline model shared by the interactive models. The contour is a SplineCurve
+ * whose basis is chosen by the subclass, which also decides how the contour is
+ * initialized and drawn.
+ */
+abstract class InteractiveSplineModel implements Snake2D {
+
+	/** Default sampling rate at which the contours are discretized. */
+	public static final int DEFAULTSAMPLINGRATE = SplineCurve.DEFAULTSAMPLINGRATE;
+
+	/** Contour of the snake. */
+	protected SplineCurve curve_ = null;
+
+	/** Width of the original image data. */
+	protected int width_ = 0;
+	/** Height of the original image data. */
+	protected int height_ = 0;
+
+	/** If true indicates that the snake is able to keep being optimized. */
+	private boolean alive_ = true;
+
+	/**
+	 * If true, indicates that the user chose to interactively abort the processing
+	 * of the snake. Otherwise, if false, indicates that the dealings with the snake
+	 * were terminated without user assistance.
+	 */
+	private boolean canceledByUser_ = false;
+
+	/** Scales returned by getScales(), refilled in place. */
+	protected Snake2DScale[] scales_ = null;
+	/** Value of the version of the contour when the scales were last filled. */
+	private long scalesVersion_ = -1;
+	/** If true, consecutive skin samples falling on the same pixel are merged. */
+	private boolean deduplicateSkin_ = false;
+	/** If true, skin samples collinear with their neighbors are removed. */
+	private boolean removeCollinear_ = false;
+
+	/** Image energy of the contour, or null if the contour is not optimized. */
+	private SplineEnergy energy_ = null;
+
+	// ============================================================================
+	// PUBLIC METHODS
+
+	/**
+	 * Constructor.
+	 */
+	protected InteractiveSplineModel(int width, int height) {
+		width_ = width;
+		height_ = height;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns a copy of the model that another thread may optimize while this
+	 * one is in use. The copy has its own contour and scales; it shares the
+	 * immutable parts of the contour and the image energy, whose evaluation keeps
+	 * no state. A model and its copies must each be used by one thread at a time.
+	 */
+	public abstract InteractiveSplineModel copy();
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * The purpose of this method is to compute the energy of the snake.
+	 */
+	@Override
+	public double energy() {
+		if (energy_ == null) {
+			return (0.0);
+		}
+		return (curve_.energy(energy_));
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * The purpose of this method is to compute the gradient of the snake energy
+	 * with respect to the snake-defining nodes.
+	 */
+	@Override
+	public Point2D.Double[] getEnergyGradient() {
+		if (energy_ == null) {
+			return null;
+		}
+		return (curve_.energyGradient(energy_));
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Sets the image energy minimized when the contour is optimized. If energy is
+	 * null, the energy of the contour is zero and its gradient is not provided.
+	 */
+	public void setEnergy(SplineEnergy energy) {
+		energy_ = energy;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * This method provides an accessor to the snake-defining nodes.
+	 */
+	@Override
+	public Snake2DNode[] getNodes() {
+		return (curve_.getNodes());
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * This method provides an accessor to the number of nodes.
+	 */
+	public int getNumNodes() {
+		return (curve_.getNumNodes());
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * The purpose of this method is to detemine what to draw on screen, given the
+	 * current configuration of nodes. The scales are refilled in place, and only if
+	 * the contour changed since the previous call; their version tells whether
+	 * their content changed. Callers that need to keep them must copy them.
+	 */
+	@Override
+	public Snake2DScale[] getScales() {
+		if (scales_ == null) {
+			scales_ = createScales();
+		}
+		final long version = curve_.getVersion();
+		if (scalesVersion_ == version) {
+			return (scales_);
+		}
+		fillScales(version);
+		scalesVersion_ = version;
+		return (scales_);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Sets whether the skin returned by getScales() is simplified. If deduplicate
+	 * is true, consecutive samples that fall on the same pixel are merged. If
+	 * removeCollinear is true, samples lying on the straight segment joining their
+	 * neighbors are removed as well. The drawn outline is unchanged either way.
+	 */
+	public void setSkinSimplification(boolean deduplicate, boolean removeCollinear) {
+		deduplicateSkin_ = deduplicate;
+		removeCollinear_ = removeCollinear;
+		curve_.invalidate();
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Sets whether the contour is evaluated from the closed-form pieces of its
+	 * basis functions instead of their sampled LUTs. The closed form places the
+	 * samples exactly and allocates no LUT, while the LUTs are usually slightly
+	 * faster to evaluate. The skin is recomputed in the chosen mode.
+	 */
+	public void setClosedFormEvaluation(boolean closedForm) {
+		curve_.setClosedForm(closedForm);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the point of the contour at parameter t, where the k-th segment
+	 * spans t in [k, k + 1) and the contour is periodic of period M. The point is
+	 * exact, whatever the sampling rate of the skin.
+	 */
+	public Point2D.Double getPoint(double t) {
+		return (curve_.getPoint(t));
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * The purpose of this method is to monitor the status of the snake.
+	 */
+	@Override
+	public boolean isAlive() {
+		return alive_;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * This method provides a mutator to the snake-defining nodes. Only the skin
+	 * segments lying in the support of the nodes that changed are recomputed.
+	 */
+	@Override
+	public void setNodes(Snake2DNode[] node) {
+		curve_.setNodes(node);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * If true, indicates that the user chose to interactively abort the processing
+	 * of the snake. Otherwise, if false, indicates that the dealings with the snake
+	 * were terminated without user assistance.
+	 */
+	public boolean isCanceledByUser() {
+		return (canceledByUser_);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * This method is called when the methods Snake2DKeeper.interact(),
+	 * Snake2DKeeper.interactAndOptimize(), and Snake2DKeeper.optimize() are about
+	 * to terminate. It provides a report on the current status of this snake.
+	 */
+	@Override
+	public void updateStatus(boolean canceledByUser, boolean snakeDied, boolean optimalSnakeFound, Double energy) {
+		canceledByUser_ = canceledByUser;
+	}
+
+	// ============================================================================
+	// PROTECTED METHODS
+
+	/**
+	 * Constructor of a copy of model, for the implementations of copy().
+	 */
+	protected InteractiveSplineModel(InteractiveSplineModel model) {
+		width_ = model.width_;
+		height_ = model.height_;
+		curve_ = model.curve_.copy();
+		alive_ = model.alive_;
+		canceledByUser_ = model.canceledByUser_;
+		deduplicateSkin_ = model.deduplicateSkin_;
+		removeCollinear_ = model.removeCollinear_;
+		energy_ = model.energy_;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Allocates the scales returned by getScales().
+	 */
+	protected abstract Snake2DScale[] createScales();
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Refills the scales returned by getScales() from the current contour, whose
+	 * version is given. Each scale is prepared with Snake2DScale.prepareContent()
+	 * before its apices are written, so that its snapshots are left unchanged.
+	 */
+	protected abstract void fillScales(long version);
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Writes the skin of the contour in the scale, simplified as set by
+	 * setSkinSimplification().
+	 */
+	protected void fillSkin(Snake2DScale skin, long version) {
+		skin.prepareContent(curve_.getMaxSamples());
+		skin.setContent(curve_.fillSkin(skin, width_, height_), version);
+		if (deduplicateSkin_ || removeCollinear_) {
+			skin.simplify(removeCollinear_);
+		}
+	}
+}
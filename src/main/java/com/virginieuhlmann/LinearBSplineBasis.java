@@ -0,0 +1,38 @@
+package com.virginieuhlmann;
+
+/**
+ * Linear B-spline basis. The curve is the polygon joining its coefficients.
+ */
+final class LinearBSplineBasis extends SplineBasis {
+
+	// ============================================================================
+	// PUBLIC METHODS
+
+	@Override
+	int support() {
+		return 2;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	@Override
+	String name(int c) {
+		return SplineLUTCache.BSPLINE1;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Linear B-spline.
+	 */
+	@Override
+	double value(int c, double t) {
+		double BSplineValue = 0.0;
+		if ((t >= 0) & (t <= 1)) {
+			BSplineValue = t;
+		} else if ((t > 1) & (t <= 2)) {
+			BSplineValue = 2 - t;
+		}
+		return (BSplineValue);
+	}
+}
@@ -0,0 +1,291 @@
+package com.virginieuhlmann;
+
+/**
+ * Basis of a closed spline curve with M nodes. Each node carries one or more
+ * vector coefficients, each weighted by its own basis function; the coefficients
+ * of the c-th kind are stored at indices c*M to c*M + M - 1. The l-th segment of
+ * the curve, for t in [l, l + 1), is supported by the coefficients (l + shift - n)
+ * mod M for n in [0, N), whose basis functions are evaluated at t - l + n.
+ */
+abstract class SplineBasis {
+
+	/** Coefficients of the pieces of the basis functions in the local functions. */
+	private double[][][] pieces_ = null;
+
+	// ============================================================================
+	// PUBLIC METHODS
+
+	/**
+	 * Returns the length N of the support of the basis functions.
+	 */
+	abstract int support();
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the number of coefficients carried by each node.
+	 */
+	int coefficientsPerNode() {
+		return 1;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the shift of the coefficients supporting a segment.
+	 */
+	int shift() {
+		return 0;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the name under which the samples of the c-th basis function are
+	 * stored in the SplineLUTCache.
+	 */
+	abstract String name(int c);
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the number of nodes the basis functions depend on, or zero if they do
+	 * not depend on it.
+	 */
+	int dependencyOnM() {
+		return 0;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the value of the c-th basis function at t, with t in [0, N].
+	 */
+	abstract double value(int c, double t);
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns an upper bound of the length of the l-th segment of the curve. The
+	 * default implementation returns the length of the control polygon over the
+	 * support of the segment, which bounds the length of the segment for bases
+	 * that are positive and form a partition of unity.
+	 */
+	double segmentLengthBound(double[] x, double[] y, int M, int l) {
+		double length = 0.0;
+		for (int n = 0; n < support() - 1; n++) {
+			final int k = l + shift() - n;
+			final int i = (k % M + M) % M;
+			final int j = ((k - 1) % M + M) % M;
+			length += Math.hypot(x[i] - x[j], y[i] - y[j]);
+		}
+		return length;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Turns in place the samples of a closed curve at the M nodes into the
+	 * coefficients of the curve that interpolates them. The default implementation
+	 * leaves the samples unchanged, which suits interpolating bases.
+	 */
+	void prefilter(double[] s) {
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the number D of local functions spanning the pieces of the basis
+	 * functions on the unit intervals. The default implementation returns the
+	 * support, which suits the polynomial B-splines.
+	 */
+	int localDimension() {
+		return support();
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Writes in phi the values at t of the D local functions. The default
+	 * implementation evaluates the monomials 1, t, t^2, ...
+	 */
+	void localFunctions(double t, double[] phi) {
+		double p = 1.0;
+		for (int m = 0; m < phi.length; m++) {
+			phi[m] = p;
+			p *= t;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the value at t of the combination of the local functions with
+	 * coefficients a. The default implementation uses Horner's scheme.
+	 */
+	double evaluatePiece(double[] a, double t) {
+		double v = 0.0;
+		for (int m = a.length - 1; m >= 0; m--) {
+			v = v * t + a[m];
+		}
+		return (v);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Writes in out[offset + j], for j in [0, S), the values at t = j / S of the
+	 * combination of the local functions with coefficients a. The default
+	 * implementation unrolls Horner's scheme for the linear and cubic pieces.
+	 */
+	void evaluatePiece(double[] a, int S, double[] out, int offset) {
+		final double h = 1.0 / S;
+		if (a.length == 2) {
+			final double a0 = a[0], a1 = a[1];
+			for (int j = 0; j < S; j++) {
+				out[offset + j] = a1 * (j * h) + a0;
+			}
+		} else if (a.length == 4) {
+			final double a0 = a[0], a1 = a[1], a2 = a[2], a3 = a[3];
+			double t;
+			for (int j = 0; j < S; j++) {
+				t = j * h;
+				out[offset + j] = ((a3 * t + a2) * t + a1) * t + a0;
+			}
+		} else {
+			for (int j = 0; j < S; j++) {
+				out[offset + j] = evaluatePiece(a, j * h);
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the coefficients, in the local functions, of the pieces of the c-th
+	 * basis function. The n-th row holds the piece on [n, n + 1), as a function of
+	 * t - n. The pieces are fitted once from D samples of the basis function
+	 * inside each interval, which is exact up to rounding since they lie in the
+	 * span of the local functions.
+	 */
+	final synchronized double[][] pieces(int c) {
+		if (pieces_ == null) {
+			pieces_ = new double[coefficientsPerNode()][][];
+		}
+		if (pieces_[c] != null) {
+			return (pieces_[c]);
+		}
+
+		final int N = support();
+		final int D = localDimension();
+		final double[][] A = new double[D][D];
+		for (int i = 0; i < D; i++) {
+			localFunctions((i + 0.5) / D, A[i]);
+		}
+
+		final double[][] pieces = new double[N][];
+		for (int n = 0; n < N; n++) {
+			final double[] b = new double[D];
+			for (int i = 0; i < D; i++) {
+				b[i] = value(c, n + (i + 0.5) / D);
+			}
+			pieces[n] = solve(A, b);
+		}
+		pieces_[c] = pieces;
+		return (pieces);
+	}
+
+	// ============================================================================
+	// PROTECTED METHODS
+
+	/**
+	 * Turns in place the samples of a closed curve into the coefficients of the
+	 * curve that interpolates them, for a basis that forms a partition of unity and
+	 * whose samples at the integers are (1 - b) / 2, b and (1 - b) / 2.
+	 */
+	protected static void prefilterSymmetric(double[] s, double b) {
+		double[] pole = { (-b + Math.sqrt(2 * b - 1)) / (1 - b) };
+		prescaledPeriodic(s, pole);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Filters an array with a all-pole recursive filter with periodic boundary
+	 * conditions.
+	 */
+	protected static double[] prescaledPeriodic(double[] s, double[] pole) {
+
+		final int N = s.length;
+		for (int p = 0, P = pole.length; (p < P); p++) {
+			final double z = pole[p];
+			double z1 = z;
+			for (int k = N - 1; (0 < k); k--) {
+				s[0] += z1 * s[k];
+				z1 *= z;
+			}
+			s[0] /= 1.0 - z1;
+			for (int k = 1; (k < N); k++) {
+				s[k] += z * s[k - 1];
+			}
+			z1 = z;
+			final int K = N - 1;
+			for (int k = 0; (k < K); k++) {
+				s[K] += z1 * s[k];
+				z1 *= z;
+			}
+			s[K] *= 1.0 / (1.0 - z1);
+			z1 = 1.0 - z;
+			z1 *= z1;
+			s[K] *= z1;
+			for (int k = N - 2; (0 <= k); k--) {
+				s[k] = z * s[k + 1] + z1 * s[k];
+			}
+		}
+		return (s);
+	}
+
+	// ============================================================================
+	// PRIVATE METHODS
+
+	/**
+	 * Solves the square linear system A x = b by Gaussian elimination with partial
+	 * pivoting. A and b are left unchanged.
+	 */
+	private static double[] solve(double[][] A, double[] b) {
+		final int D = b.length;
+		final double[][] a = new double[D][];
+		final double[] x = b.clone();
+		for (int i = 0; i < D; i++) {
+			a[i] = A[i].clone();
+		}
+		for (int k = 0; k < D; k++) {
+			int p = k;
+			for (int i = k + 1; i < D; i++) {
+				if (Math.abs(a[i][k]) > Math.abs(a[p][k])) {
+					p = i;
+				}
+			}
+			final double[] row = a[k];
+			a[k] = a[p];
+			a[p] = row;
+			final double v = x[k];
+			x[k] = x[p];
+			x[p] = v;
+			for (int i = k + 1; i < D; i++) {
+				final double f = a[i][k] / a[k][k];
+				for (int j = k; j < D; j++) {
+					a[i][j] -= f * a[k][j];
+				}
+				x[i] -= f * x[k];
+			}
+		}
+		for (int k = D - 1; k >= 0; k--) {
+			for (int j = k + 1; j < D; j++) {
+				x[k] -= a[k][j] * x[j];
+			}
+			x[k] /= a[k][k];
+		}
+		return (x);
+	}
+}
@@ -0,0 +1,822 @@
+package com.virginieuhlmann;
+
+import java.awt.Polygon;
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.virginieuhlmann.snake2D.Snake2DNode;
+import com.virginieuhlmann.snake2D.Snake2DScale;
+
+/**
+ * Closed spline curve, parameterized by its basis. The curve keeps a dense
+ * discretization of itself, its skin, which is updated incrementally when its
+ * coefficients move and from which the image energy and the drawn outline are
+ * computed.
+ */
+final class SplineCurve {
+
+	/** Default sampling rate at which the curve is discretized. */
+	static final int DEFAULTSAMPLINGRATE = 500;
+	/** Number of samples per pixel of arc length in adaptive discretization. */
+	private static final double ADAPTIVESAMPLESPERPIXEL = 2.0;
+
+	/** Basis of the curve. */
+	private final SplineBasis basis_;
+
+	/** Packed x coordinates of the coefficients. */
+	private final double[] xCoef_;
+	/** Packed y coordinates of the coefficients. */
+	private final double[] yCoef_;
+	/** Flags the coefficients that are frozen. */
+	private final BitSet frozen_;
+	/** Flags the coefficients that are hidden. */
+	private final BitSet hidden_;
+
+	/** Number of nodes. */
+	private final int M_;
+	/** Length of the support of the basis functions. */
+	private final int N_;
+	/** Number of coefficients per node. */
+	private final int C_;
+
+	/**
+	 * Sampling rate at which the curve is discretized. In adaptive mode, this is
+	 * the maximum number of samples per segment.
+	 */
+	private final int R_;
+	/** If true, the number of samples of each segment depends on its length. */
+	private final boolean adaptive_;
+
+	/**
+	 * LUTs with the samples of the basis functions at rate R, or null until the
+	 * curve is first evaluated through them.
+	 */
+	private double[][] splineFunc_ = null;
+	/**
+	 * If true, the skin is evaluated from the closed-form pieces of the basis
+	 * functions instead of their LUTs.
+	 */
+	private boolean closedForm_ = false;
+	/** Coefficients of the pieces of the basis functions in the local functions. */
+	private final double[][][] pieces_;
+
+	/** Coefficients supporting each segment, in increasing order. */
+	private final int[][] supportCoef_;
+	/** LUT offsets of the coefficients supporting each segment. */
+	private final int[][] supportOffset_;
+	/** Pieces of the basis functions of the coefficients supporting each segment. */
+	private final int[][] supportPiece_;
+
+	/** Coefficients of the x coordinates of a segment in the local functions. */
+	private final double[] xLocal_;
+	/** Coefficients of the y coordinates of a segment in the local functions. */
+	private final double[] yLocal_;
+	/** Samples of a piece of a basis function along a segment. */
+	private double[] weights_ = null;
+
+	/**
+	 * LUT with the samples of the x coordinates of the curve at rate R.
+	 */
+	private final double[] xPosSkin_;
+	/**
+	 * LUT with the samples of the y coordinates of the curve at rate R.
+	 */
+	private final double[] yPosSkin_;
+
+	/** Flags the skin segments that must be recomputed at the next update. */
+	private final boolean[] dirtySegments_;
+	/** Number of samples of each segment of the curve. */
+	private final int[] segmentSamples_;
+	/** Incremented every time the skin changes. */
+	private long skinVersion_ = 0;
+	/** Indices of the samples of the skin, in order along the curve. */
+	private int[] skinIndex_ = null;
+	/** Number of samples listed in skinIndex_, or -1 if it must be rebuilt. */
+	private int skinSamples_ = -1;
+
+	/** Derivatives of the energy with respect to the x coordinates of the skin. */
+	private double[] xForce_ = null;
+	/** Derivatives of the energy with respect to the y coordinates of the skin. */
+	private double[] yForce_ = null;
+
+	// ============================================================================
+	// PUBLIC METHODS
+
+	/**
+	 * Constructor. The curve copies coef, which must hold
+	 * basis.coefficientsPerNode()*M coefficients. The curve is discretized with
+	 * samplingRate samples per segment; in adaptive mode, the number of samples of
+	 * each segment is instead chosen from its length in pixels, up to samplingRate.
+	 */
+	SplineCurve(SplineBasis basis, int M, Snake2DNode[] coef, int samplingRate, boolean adaptive) {
+		this(basis, M, coef, samplingRate, adaptive, false);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Constructor. If closedForm is true, the skin is evaluated from the
+	 * closed-form pieces of the basis functions, and their LUTs are not built.
+	 */
+	SplineCurve(SplineBasis basis, int M, Snake2DNode[] coef, int samplingRate, boolean adaptive,
+			boolean closedForm) {
+		basis_ = basis;
+		M_ = M;
+		N_ = basis.support();
+		C_ = basis.coefficientsPerNode();
+		R_ = samplingRate;
+		adaptive_ = adaptive;
+		closedForm_ = closedForm;
+
+		xCoef_ = new double[C_ * M_];
+		yCoef_ = new double[C_ * M_];
+		frozen_ = new BitSet(C_ * M_);
+		hidden_ = new BitSet(C_ * M_);
+		for (int i = 0; i < C_ * M_; i++) {
+			xCoef_[i] = coef[i].x;
+			yCoef_[i] = coef[i].y;
+			frozen_.set(i, coef[i].frozen);
+			hidden_.set(i, coef[i].hidden);
+		}
+
+		pieces_ = new double[C_][][];
+		for (int c = 0; c < C_; c++) {
+			pieces_[c] = basis.pieces(c);
+		}
+		xLocal_ = new double[basis.localDimension()];
+		yLocal_ = new double[basis.localDimension()];
+
+		supportCoef_ = new int[M_][N_];
+		supportOffset_ = new int[M_][N_];
+		supportPiece_ = new int[M_][N_];
+		for (int l = 0; l < M_; l++) {
+			buildSupport(l);
+		}
+
+		xPosSkin_ = new double[M_ * R_];
+		yPosSkin_ = new double[M_ * R_];
+		dirtySegments_ = new boolean[M_];
+		segmentSamples_ = new int[M_];
+
+		computePosSkin();
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns a copy of the curve that another thread may use. The copy shares
+	 * the basis, the pieces of the basis functions, their LUTs and the supports of
+	 * the segments, which are never modified, and has coefficients, skin and
+	 * scratch buffers of its own.
+	 */
+	SplineCurve copy() {
+		return new SplineCurve(this);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns a copy of the coefficients of the curve. Changes to the copy take
+	 * effect only once it is passed to setNodes().
+	 */
+	Snake2DNode[] getNodes() {
+		final Snake2DNode[] node = new Snake2DNode[C_ * M_];
+		for (int i = 0; i < C_ * M_; i++) {
+			node[i] = new Snake2DNode(xCoef_[i], yCoef_[i], frozen_.get(i), hidden_.get(i));
+		}
+		return node;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the x coordinate of the i-th coefficient.
+	 */
+	double getX(int i) {
+		return xCoef_[i];
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the y coordinate of the i-th coefficient.
+	 */
+	double getY(int i) {
+		return yCoef_[i];
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the number of nodes.
+	 */
+	int getNumNodes() {
+		return M_;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the maximum number of samples of the skin.
+	 */
+	int getMaxSamples() {
+		return M_ * R_;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns a number that changes every time the skin changes.
+	 */
+	long getVersion() {
+		return skinVersion_;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Changes the version of the skin without changing the skin, so that
+	 * representations derived from it are refreshed.
+	 */
+	void invalidate() {
+		skinVersion_++;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Chooses whether the skin is evaluated from the closed-form pieces of the
+	 * basis functions or from their LUTs, and recomputes it.
+	 */
+	void setClosedForm(boolean closedForm) {
+		if (closedForm_ != closedForm) {
+			closedForm_ = closedForm;
+			computePosSkin();
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns whether the skin is evaluated from the closed-form pieces of the
+	 * basis functions.
+	 */
+	boolean isClosedForm() {
+		return closedForm_;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the point of the curve at parameter t, where the l-th segment spans
+	 * t in [l, l + 1). The point is computed from the closed-form pieces of the
+	 * basis functions, whatever the evaluation mode of the skin.
+	 */
+	Point2D.Double getPoint(double t) {
+		final double floor = Math.floor(t);
+		final int l = (int) (((long) floor % M_ + M_) % M_);
+		localCoefficients(l);
+		return new Point2D.Double(basis_.evaluatePiece(xLocal_, t - floor), basis_.evaluatePiece(yLocal_, t - floor));
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Copies the coefficients. Only the skin segments lying in the support of the
+	 * coefficients that moved are recomputed.
+	 */
+	void setNodes(Snake2DNode[] node) {
+		for (int i = 0; i < C_ * M_; i++) {
+			frozen_.set(i, node[i].frozen);
+			hidden_.set(i, node[i].hidden);
+			if (xCoef_[i] != node[i].x || yCoef_[i] != node[i].y) {
+				xCoef_[i] = node[i].x;
+				yCoef_[i] = node[i].y;
+				final int k = i % M_;
+				for (int n = 0; n < N_; n++) {
+					dirtySegments_[((k - basis_.shift() + n) % M_ + M_) % M_] = true;
+				}
+			}
+		}
+		updatePosSkin();
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Writes the samples of the skin, rounded and clamped to [0, width) x [0,
+	 * height), in the apices of the scale. Returns the number of apices written.
+	 */
+	int fillSkin(Snake2DScale scale, int width, int height) {
+		final int[] xpoints = scale.xpoints;
+		final int[] ypoints = scale.ypoints;
+		int n = 0;
+
+		int rxt, ryt;
+		for (int l = 0; l < M_; l++) {
+			for (int k = l * R_, K = k + segmentSamples_[l]; k < K; k++) {
+				rxt = (int) Math.round(xPosSkin_[k] + 0.5);
+				ryt = (int) Math.round(yPosSkin_[k] + 0.5);
+
+				if (rxt < 0) {
+					rxt = 0;
+				} else if (rxt >= width) {
+					rxt = width - 1;
+				}
+
+				if (ryt < 0) {
+					ryt = 0;
+				} else if (ryt >= height) {
+					ryt = height - 1;
+				}
+
+				xpoints[n] = rxt;
+				ypoints[n] = ryt;
+				n++;
+			}
+		}
+		return n;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the image energy of the curve.
+	 */
+	double energy(SplineEnergy energy) {
+		final int samples = indexSkin();
+		return energy.evaluate(xPosSkin_, yPosSkin_, skinIndex_, samples, null, null);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the gradient of the image energy with respect to the coefficients.
+	 * The derivatives with respect to the samples of the skin are accumulated onto
+	 * the coefficients supporting them.
+	 */
+	Point2D.Double[] energyGradient(SplineEnergy energy) {
+		if (xForce_ == null) {
+			xForce_ = new double[M_ * R_];
+			yForce_ = new double[M_ * R_];
+		}
+		final int samples = indexSkin();
+		energy.evaluate(xPosSkin_, yPosSkin_, skinIndex_, samples, xForce_, yForce_);
+
+		final Point2D.Double[] gradient = new Point2D.Double[C_ * M_];
+		for (int k = 0; k < C_ * M_; k++) {
+			gradient[k] = new Point2D.Double(0.0, 0.0);
+		}
+
+		if (closedForm_) {
+			projectClosedForm(gradient);
+			return gradient;
+		}
+
+		final double[][] splineFunc = getLUTs();
+		int k, offset;
+
+		double aux;
+		for (int l = 0; l < M_; l++) {
+			final int[] supportCoef = supportCoef_[l];
+			final int[] supportOffset = supportOffset_[l];
+			final int S = segmentSamples_[l];
+			int i = l * R_;
+			for (int j = 0; j < S; j++, i++) {
+				offset = (j * R_) / S;
+				for (int n = 0; n < N_; n++) {
+					for (int c = 0; c < C_; c++) {
+						k = supportCoef[n] + c * M_;
+						aux = splineFunc[c][offset + supportOffset[n]];
+						gradient[k].x += xForce_[i] * aux;
+						gradient[k].y += yForce_[i] * aux;
+					}
+				}
+			}
+		}
+		return gradient;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Reparameterizes a closed polygon to arc length parameterization with a given
+	 * number of points.
+	 */
+	static Point2D.Double[] arcLengthResampling(Polygon p, int nPoints) {
+
+		p.addPoint(p.xpoints[0], p.ypoints[0]);
+
+		double[] arcLength = new double[p.npoints];
+		arcLength[0] = 0;
+		for (int i = 1; i < p.npoints; i++) {
+			arcLength[i] = arcLength[i - 1]
+					+ Math.sqrt((p.xpoints[i] - p.xpoints[i - 1]) * (p.xpoints[i] - p.xpoints[i - 1])
+							+ (p.ypoints[i] - p.ypoints[i - 1]) * (p.ypoints[i] - p.ypoints[i - 1]));
+		}
+
+		Point2D.Double[] resampledCurve = new Point2D.Double[nPoints];
+		double delta = arcLength[p.npoints - 1] / nPoints;
+		int index = 0;
+		for (int i = 0; i < nPoints; i++) {
+			double t = delta * i;
+			boolean found = false;
+			for (; index < (p.npoints - 1) && !found; index++) {
+				if (arcLength[index] <= t && arcLength[index + 1] >= t) {
+					found = true;
+				}
+			}
+			index--;
+			resampledCurve[i] = new Point2D.Double(
+					((arcLength[index + 1] - t) * p.xpoints[index] + (t - arcLength[index]) * p.xpoints[index + 1])
+							/ (arcLength[index + 1] - arcLength[index]),
+					((arcLength[index + 1] - t) * p.ypoints[index] + (t - arcLength[index]) * p.ypoints[index + 1])
+							/ (arcLength[index + 1] - arcLength[index]));
+		}
+		return resampledCurve;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Computes the coefficients of the curve of the given single-coefficient basis
+	 * that interpolates the given points at its nodes.
+	 */
+	static Snake2DNode[] interpolate(SplineBasis basis, Point2D.Double[] contour) {
+		final int M = contour.length;
+		double[] knotsX = new double[M];
+		double[] knotsY = new double[M];
+
+		for (int i = 0; i < M; i++) {
+			knotsX[i] = contour[i].x;
+			knotsY[i] = contour[i].y;
+		}
+
+		basis.prefilter(knotsX);
+		basis.prefilter(knotsY);
+
+		Snake2DNode[] newCoeff = new Snake2DNode[M];
+		for (int i = 0; i < M; i++) {
+			newCoeff[i] = new Snake2DNode(knotsX[i], knotsY[i]);
+		}
+		return newCoeff;
+	}
+
+	// ============================================================================
+	// PRIVATE METHODS
+
+	/**
+	 * Constructor of a copy of curve.
+	 */
+	private SplineCurve(SplineCurve curve) {
+		basis_ = curve.basis_;
+		M_ = curve.M_;
+		N_ = curve.N_;
+		C_ = curve.C_;
+		R_ = curve.R_;
+		adaptive_ = curve.adaptive_;
+		closedForm_ = curve.closedForm_;
+		splineFunc_ = curve.splineFunc_;
+
+		xCoef_ = curve.xCoef_.clone();
+		yCoef_ = curve.yCoef_.clone();
+		frozen_ = (BitSet) curve.frozen_.clone();
+		hidden_ = (BitSet) curve.hidden_.clone();
+
+		pieces_ = curve.pieces_;
+		xLocal_ = new double[curve.xLocal_.length];
+		yLocal_ = new double[curve.yLocal_.length];
+
+		supportCoef_ = curve.supportCoef_;
+		supportOffset_ = curve.supportOffset_;
+		supportPiece_ = curve.supportPiece_;
+
+		xPosSkin_ = curve.xPosSkin_.clone();
+		yPosSkin_ = curve.yPosSkin_.clone();
+		dirtySegments_ = curve.dirtySegments_.clone();
+		segmentSamples_ = curve.segmentSamples_.clone();
+		skinVersion_ = curve.skinVersion_;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the LUT of the c-th basis function. The LUTs are shared with the
+	 * other curves through the SplineLUTCache.
+	 */
+	private double[] buildLUT(int c) {
+		final String name = basis_.name(c);
+		final int M = basis_.dependencyOnM();
+		double[] splineFunc = SplineLUTCache.get(name, M, R_);
+		if (splineFunc != null) {
+			return splineFunc;
+		}
+
+		final int NR = N_ * R_;
+		double currentVal;
+		splineFunc = new double[NR];
+
+		for (int i = 0; i < NR; i++) {
+			currentVal = (double) i / (double) R_;
+			splineFunc[i] = basis_.value(c, currentVal);
+		}
+		return SplineLUTCache.put(name, M, R_, splineFunc);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Lists the coefficients supporting the l-th segment in increasing order of
+	 * their index, so that the samples of the skin are summed in a fixed order,
+	 * along with the LUT offsets of their basis functions.
+	 */
+	private void buildSupport(int l) {
+		final int[] supportCoef = supportCoef_[l];
+		final int[] supportOffset = supportOffset_[l];
+		for (int n = 0; n < N_; n++) {
+			int k = l + basis_.shift() - n;
+			k = (k % M_ + M_) % M_;
+			int p = n;
+			while (p > 0 && supportCoef[p - 1] > k) {
+				supportCoef[p] = supportCoef[p - 1];
+				supportOffset[p] = supportOffset[p - 1];
+				supportPiece_[l][p] = supportPiece_[l][p - 1];
+				p--;
+			}
+			supportCoef[p] = k;
+			supportOffset[p] = n * R_;
+			supportPiece_[l][p] = n;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Lists the indices of the samples of the skin in skinIndex_, if the number of
+	 * samples of a segment changed since the last call, and returns their number.
+	 */
+	private int indexSkin() {
+		if (skinSamples_ < 0) {
+			if (skinIndex_ == null) {
+				skinIndex_ = new int[M_ * R_];
+			}
+			int n = 0;
+			for (int l = 0; l < M_; l++) {
+				for (int k = l * R_, K = k + segmentSamples_[l]; k < K; k++) {
+					skinIndex_[n++] = k;
+				}
+			}
+			skinSamples_ = n;
+		}
+		return skinSamples_;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Computes the skin of the curve from its coefficients.
+	 */
+	private void computePosSkin() {
+		for (int l = 0; l < M_; l++) {
+			computePosSkin(l);
+			dirtySegments_[l] = false;
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Recomputes the segments of the skin flagged as dirty.
+	 */
+	private void updatePosSkin() {
+		for (int l = 0; l < M_; l++) {
+			if (dirtySegments_[l]) {
+				computePosSkin(l);
+				dirtySegments_[l] = false;
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Computes the samples of the l-th segment of the skin. Only the coefficients
+	 * whose basis function support contains the segment are visited, in
+	 * increasing order of their index.
+	 */
+	private void computePosSkin(int l) {
+		final int S = adaptive_ ? adaptiveSegmentSamples(l) : R_;
+		if (segmentSamples_[l] != S) {
+			segmentSamples_[l] = S;
+			skinSamples_ = -1;
+		}
+		skinVersion_++;
+
+		if (closedForm_) {
+			localCoefficients(l);
+			basis_.evaluatePiece(xLocal_, S, xPosSkin_, l * R_);
+			basis_.evaluatePiece(yLocal_, S, yPosSkin_, l * R_);
+		} else if (S == R_) {
+			computeUniformPosSkin(l);
+		} else {
+			computeResampledPosSkin(l, S);
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Computes the R samples of the l-th segment of the skin. The LUT samples of
+	 * the basis function of each supporting coefficient are then contiguous, so
+	 * that the segment is accumulated one coefficient at a time in unit-stride
+	 * loops, which the JIT compiler turns into SIMD instructions. Each sample sums
+	 * the same products in the same order as computeResampledPosSkin(), which
+	 * handles the bases with more than two coefficients per node.
+	 */
+	private void computeUniformPosSkin(int l) {
+		final double[][] splineFunc = getLUTs();
+		final int[] supportCoef = supportCoef_[l];
+		final int[] supportOffset = supportOffset_[l];
+		final double[] xPosSkin = xPosSkin_;
+		final double[] yPosSkin = yPosSkin_;
+		final int R = R_;
+		final int i0 = l * R;
+
+		Arrays.fill(xPosSkin, i0, i0 + R, 0.0);
+		Arrays.fill(yPosSkin, i0, i0 + R, 0.0);
+		if (C_ == 1) {
+			final double[] splineFunc0 = splineFunc[0];
+			for (int n = 0; n < N_; n++) {
+				final int k = supportCoef[n];
+				final double x = xCoef_[k];
+				final double y = yCoef_[k];
+				final int o = supportOffset[n];
+				for (int j = 0; j < R; j++) {
+					final double aux = splineFunc0[o + j];
+					xPosSkin[i0 + j] += x * aux;
+					yPosSkin[i0 + j] += y * aux;
+				}
+			}
+			return;
+		}
+
+		if (C_ == 2) {
+			final double[] splineFunc0 = splineFunc[0];
+			final double[] splineFunc1 = splineFunc[1];
+			for (int n = 0; n < N_; n++) {
+				final int k = supportCoef[n];
+				final double x0 = xCoef_[k];
+				final double y0 = yCoef_[k];
+				final double x1 = xCoef_[k + M_];
+				final double y1 = yCoef_[k + M_];
+				final int o = supportOffset[n];
+				for (int j = 0; j < R; j++) {
+					final double aux0 = splineFunc0[o + j];
+					final double aux1 = splineFunc1[o + j];
+					xPosSkin[i0 + j] += x0 * aux0 + x1 * aux1;
+					yPosSkin[i0 + j] += y0 * aux0 + y1 * aux1;
+				}
+			}
+			return;
+		}
+
+		computeResampledPosSkin(l, R);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Computes the S samples of the l-th segment of the skin by picking the LUT
+	 * samples nearest below their parameters.
+	 */
+	private void computeResampledPosSkin(int l, int S) {
+		final double[][] splineFunc = getLUTs();
+		final int[] supportCoef = supportCoef_[l];
+		final int[] supportOffset = supportOffset_[l];
+
+		int k, offset;
+
+		double aux, xPosVal, yPosVal, xTerm, yTerm;
+		int i = l * R_;
+		if (C_ == 1) {
+			final double[] splineFunc0 = splineFunc[0];
+			for (int j = 0; j < S; j++, i++) {
+				offset = (j * R_) / S;
+				xPosVal = 0.0;
+				yPosVal = 0.0;
+				for (int n = 0; n < N_; n++) {
+					k = supportCoef[n];
+					aux = splineFunc0[offset + supportOffset[n]];
+					xPosVal += xCoef_[k] * aux;
+					yPosVal += yCoef_[k] * aux;
+				}
+				xPosSkin_[i] = xPosVal;
+				yPosSkin_[i] = yPosVal;
+			}
+		} else {
+			for (int j = 0; j < S; j++, i++) {
+				offset = (j * R_) / S;
+				xPosVal = 0.0;
+				yPosVal = 0.0;
+				for (int n = 0; n < N_; n++) {
+					k = supportCoef[n];
+					xTerm = 0.0;
+					yTerm = 0.0;
+					for (int c = 0; c < C_; c++) {
+						aux = splineFunc[c][offset + supportOffset[n]];
+						xTerm += xCoef_[k + c * M_] * aux;
+						yTerm += yCoef_[k + c * M_] * aux;
+					}
+					xPosVal += xTerm;
+					yPosVal += yTerm;
+				}
+				xPosSkin_[i] = xPosVal;
+				yPosSkin_[i] = yPosVal;
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the LUTs of the basis functions, built on first use.
+	 */
+	private double[][] getLUTs() {
+		if (splineFunc_ == null) {
+			final double[][] splineFunc = new double[C_][];
+			for (int c = 0; c < C_; c++) {
+				splineFunc[c] = buildLUT(c);
+			}
+			splineFunc_ = splineFunc;
+		}
+		return splineFunc_;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Computes the coefficients of the l-th segment in the local functions of the
+	 * basis, by combining the pieces of the basis functions of the coefficients
+	 * that support it.
+	 */
+	private void localCoefficients(int l) {
+		final int[] supportCoef = supportCoef_[l];
+		final int[] supportPiece = supportPiece_[l];
+		final int D = xLocal_.length;
+		for (int m = 0; m < D; m++) {
+			xLocal_[m] = 0.0;
+			yLocal_[m] = 0.0;
+		}
+		for (int n = 0; n < N_; n++) {
+			for (int c = 0; c < C_; c++) {
+				final double x = xCoef_[supportCoef[n] + c * M_];
+				final double y = yCoef_[supportCoef[n] + c * M_];
+				final double[] piece = pieces_[c][supportPiece[n]];
+				for (int m = 0; m < D; m++) {
+					xLocal_[m] += x * piece[m];
+					yLocal_[m] += y * piece[m];
+				}
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Accumulates the derivatives of the energy with respect to the samples of the
+	 * skin onto the coefficients, sampling the pieces of the basis functions in
+	 * closed form along each segment.
+	 */
+	private void projectClosedForm(Point2D.Double[] gradient) {
+		if (weights_ == null) {
+			weights_ = new double[R_];
+		}
+		for (int l = 0; l < M_; l++) {
+			final int[] supportCoef = supportCoef_[l];
+			final int[] supportPiece = supportPiece_[l];
+			final int S = segmentSamples_[l];
+			for (int n = 0; n < N_; n++) {
+				for (int c = 0; c < C_; c++) {
+					basis_.evaluatePiece(pieces_[c][supportPiece[n]], S, weights_, 0);
+					final Point2D.Double g = gradient[supportCoef[n] + c * M_];
+					for (int j = 0, i = l * R_; j < S; j++, i++) {
+						g.x += xForce_[i] * weights_[j];
+						g.y += yForce_[i] * weights_[j];
+					}
+				}
+			}
+		}
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Chooses the number of samples of the l-th segment of the skin from an upper
+	 * bound of its length.
+	 */
+	private int adaptiveSegmentSamples(int l) {
+		final double length = basis_.segmentLengthBound(xCoef_, yCoef_, M_, l);
+		return Math.max(1, Math.min(R_, (int) Math.ceil(ADAPTIVESAMPLESPERPIXEL * length)));
+	}
+}
@@ -0,0 +1,395 @@
+package com.virginieuhlmann;
+
+import ij.plugin.filter.GaussianBlur;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+
+/**
+ * Image energy of a closed spline contour. The energy is the weighted sum of a
+ * region term, the piecewise-constant Mumford-Shah (Chan-Vese) energy per pixel,
+ * and of an edge term, the flux of the image gradient through the contour per
+ * unit length. Both rely on integrals over the area enclosed by the contour,
+ * which Green's theorem turns into integrals along the contour of images holding
+ * the cumulative sums of the data along x. An evaluation therefore costs
+ * O(contour samples) rather than O(area).
+ *
+ * The intensities are normalized to [0, 1]. Pixels are seen as unit squares
+ * centered on integer coordinates, and the area outside of the image is ignored.
+ * An evaluation keeps no state, so that one energy can serve several threads.
+ */
+public class SplineEnergy {
+
+	/** Default weight of the region energy. */
+	public static final double DEFAULTREGIONWEIGHT = 1.0;
+	/** Default weight of the edge energy. */
+	public static final double DEFAULTEDGEWEIGHT = 1.0;
+	/** Default standard deviation of the Gaussian smoothing of the edge map. */
+	public static final double DEFAULTSMOOTHING = 2.0;
+
+	/** Accuracy of the Gaussian smoothing of the edge map. */
+	private static final double BLURACCURACY = 0.002;
+
+	/** Width of the image data. */
+	private int width_ = 0;
+	/** Height of the image data. */
+	private int height_ = 0;
+
+	/** Normalized image data. */
+	private float[] image_ = null;
+	/** Cumulative sums of the normalized image data along x. */
+	private double[] cumImage_ = null;
+	/** Laplacian of the smoothed normalized image data. */
+	private float[] laplacian_ = null;
+	/** Cumulative sums of the Laplacian along x. */
+	private double[] cumLaplacian_ = null;
+
+	/** Sum of the normalized image data. */
+	private double total_ = 0.0;
+	/** Sum of the squares of the normalized image data. */
+	private double totalSquares_ = 0.0;
+	/** Area of the image. */
+	private double area_ = 0.0;
+
+	/** Weight of the region energy. */
+	private double regionWeight_ = DEFAULTREGIONWEIGHT;
+	/** Weight of the edge energy. */
+	private double edgeWeight_ = DEFAULTEDGEWEIGHT;
+
+	// ============================================================================
+	// PUBLIC METHODS
+
+	/**
+	 * Constructor. Uses the default weights and smoothing.
+	 */
+	public SplineEnergy(ImageProcessor ip) {
+		this(ip, DEFAULTREGIONWEIGHT, DEFAULTEDGEWEIGHT, DEFAULTSMOOTHING);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Constructor. The edge map is computed on the image smoothed by a Gaussian of
+	 * standard deviation smoothing; no smoothing is applied if smoothing is zero.
+	 * An IllegalArgumentException is thrown if there is no image, or if a weight
+	 * or the smoothing is negative.
+	 */
+	public SplineEnergy(ImageProcessor ip, double regionWeight, double edgeWeight, double smoothing) {
+		if (ip == null) {
+			throw new IllegalArgumentException("No image data to compute the energy from.");
+		}
+		if (regionWeight < 0.0 || edgeWeight < 0.0 || smoothing < 0.0) {
+			throw new IllegalArgumentException("The energy weights and smoothing must be non-negative.");
+		}
+
+		width_ = ip.getWidth();
+		height_ = ip.getHeight();
+		regionWeight_ = regionWeight;
+		edgeWeight_ = edgeWeight;
+		area_ = (double) width_ * (double) height_;
+
+		buildImages(ip, smoothing);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the weight of the region energy.
+	 */
+	public double getRegionWeight() {
+		return regionWeight_;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the weight of the edge energy.
+	 */
+	public double getEdgeWeight() {
+		return edgeWeight_;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Computes the energy of the closed contour whose n samples are stored in
+	 * xSkin and ySkin at the indices index[0] to index[n - 1], in order along the
+	 * contour. If xForce and yForce are not null, they receive, at the same
+	 * indices, the derivatives of the energy with respect to the position of each
+	 * sample. Returns infinity if the contour encloses no pixel or the whole image.
+	 */
+	double evaluate(double[] xSkin, double[] ySkin, int[] index, int n, double[] xForce, double[] yForce) {
+		if (image_ == null) {
+			return 0.0;
+		}
+
+		// Area integrals as contour integrals of the cumulative sums
+		double area = 0.0;
+		double sum = 0.0;
+		double flux = 0.0;
+		double length = 0.0;
+		for (int k = 0; k < n; k++) {
+			final int i = index[k];
+			final int next = index[(k + 1) % n];
+			final double dy = 0.5 * (ySkin[next] - ySkin[index[(k + n - 1) % n]]);
+			area += cumulative(null, xSkin[i], ySkin[i]) * dy;
+			sum += cumulative(cumImage_, xSkin[i], ySkin[i]) * dy;
+			if (edgeWeight_ != 0.0) {
+				flux += cumulative(cumLaplacian_, xSkin[i], ySkin[i]) * dy;
+				length += Math.hypot(xSkin[next] - xSkin[i], ySkin[next] - ySkin[i]);
+			}
+		}
+
+		// Make the integrals independent of the orientation of the contour
+		final double orientation = (area < 0.0) ? -1.0 : 1.0;
+		area *= orientation;
+		sum *= orientation;
+		flux *= orientation;
+
+		// A contour enclosing no pixel, or more than the image, is not admissible
+		if (area <= 0.0 || area >= area_ || (edgeWeight_ != 0.0 && length <= 0.0)) {
+			if (xForce != null && yForce != null) {
+				for (int k = 0; k < n; k++) {
+					xForce[index[k]] = 0.0;
+					yForce[index[k]] = 0.0;
+				}
+			}
+			return Double.POSITIVE_INFINITY;
+		}
+
+		// A self-intersecting contour may weigh pixels inconsistently, which shows
+		// as a mean outside of the range of the normalized image. The interpolation
+		// of the contour moves the means of valid contours slightly outside of the
+		// range as well, by no more than interpolationError() allows
+		if (sum < 0.0 || sum > area || total_ - sum < 0.0 || total_ - sum > area_ - area) {
+			final double error = interpolationError(xSkin, ySkin, index, n);
+			if (sum < -error || sum > area + error || total_ - sum < -error || total_ - sum > area_ - area + error) {
+				if (xForce != null && yForce != null) {
+					for (int k = 0; k < n; k++) {
+						xForce[index[k]] = 0.0;
+						yForce[index[k]] = 0.0;
+					}
+				}
+				return Double.POSITIVE_INFINITY;
+			}
+		}
+
+		// Mean squared deviation from the mean intensity inside and outside
+		final double meanIn = sum / area;
+		final double meanOut = (total_ - sum) / (area_ - area);
+		final double regionEnergy = (totalSquares_ - meanIn * sum - meanOut * (total_ - sum)) / area_;
+
+		// Mean flux per unit length, negative along the boundary of a bright object
+		final double polarity = (meanIn >= meanOut) ? 1.0 : -1.0;
+		final double edgeEnergy = (edgeWeight_ != 0.0) ? polarity * flux / length : 0.0;
+
+		if (xForce != null && yForce != null) {
+			final double dArea = (meanIn * meanIn - meanOut * meanOut) / area_;
+			final double dSum = -2.0 * (meanIn - meanOut) / area_;
+			for (int k = 0; k < n; k++) {
+				final int i = index[k];
+				final int next = index[(k + 1) % n];
+				final int prev = index[(k + n - 1) % n];
+				final double dx = 0.5 * (xSkin[next] - xSkin[prev]);
+				final double dy = 0.5 * (ySkin[next] - ySkin[prev]);
+
+				final double c = orientation * regionWeight_
+						* (dArea * sample(null, xSkin[i], ySkin[i]) + dSum * sample(image_, xSkin[i], ySkin[i]));
+				xForce[i] = c * dy;
+				yForce[i] = -c * dx;
+
+				if (edgeWeight_ != 0.0) {
+					// Derivative of the flux, then of the length, divided by the length
+					final double e = orientation * edgeWeight_ * polarity * sample(laplacian_, xSkin[i], ySkin[i])
+							/ length;
+					final double toNext = Math.hypot(xSkin[next] - xSkin[i], ySkin[next] - ySkin[i]);
+					final double toPrev = Math.hypot(xSkin[i] - xSkin[prev], ySkin[i] - ySkin[prev]);
+					double lx = 0.0;
+					double ly = 0.0;
+					if (toNext > 0.0) {
+						lx -= (xSkin[next] - xSkin[i]) / toNext;
+						ly -= (ySkin[next] - ySkin[i]) / toNext;
+					}
+					if (toPrev > 0.0) {
+						lx += (xSkin[i] - xSkin[prev]) / toPrev;
+						ly += (ySkin[i] - ySkin[prev]) / toPrev;
+					}
+					final double f = edgeWeight_ * edgeEnergy / length;
+					xForce[i] += e * dy - f * lx;
+					yForce[i] += -e * dx - f * ly;
+				}
+			}
+		}
+
+		return regionWeight_ * regionEnergy + edgeWeight_ * edgeEnergy;
+	}
+
+	// ============================================================================
+	// PRIVATE METHODS
+
+	/**
+	 * Normalizes the image data, computes its edge map and the cumulative sums of
+	 * both along x.
+	 */
+	private void buildImages(ImageProcessor ip, double smoothing) {
+		final int size = width_ * height_;
+		image_ = new float[size];
+
+		float min = Float.MAX_VALUE;
+		float max = -Float.MAX_VALUE;
+		for (int i = 0; i < size; i++) {
+			image_[i] = ip.getf(i);
+			if (image_[i] < min) {
+				min = image_[i];
+			}
+			if (image_[i] > max) {
+				max = image_[i];
+			}
+		}
+		final float scale = (max > min) ? 1.0f / (max - min) : 0.0f;
+		for (int i = 0; i < size; i++) {
+			image_[i] = (image_[i] - min) * scale;
+			total_ += image_[i];
+			totalSquares_ += image_[i] * image_[i];
+		}
+		cumImage_ = cumulativeSums(image_);
+
+		final FloatProcessor smoothed = new FloatProcessor(width_, height_, image_.clone());
+		if (smoothing > 0.0) {
+			new GaussianBlur().blurGaussian(smoothed, smoothing, smoothing, BLURACCURACY);
+		}
+		final float[] s = (float[]) smoothed.getPixels();
+		laplacian_ = new float[size];
+		for (int y = 0; y < height_; y++) {
+			final int up = (y > 0) ? -width_ : 0;
+			final int down = (y < height_ - 1) ? width_ : 0;
+			for (int x = 0; x < width_; x++) {
+				final int i = y * width_ + x;
+				final int left = (x > 0) ? -1 : 0;
+				final int right = (x < width_ - 1) ? 1 : 0;
+				laplacian_[i] = s[i + left] + s[i + right] + s[i + up] + s[i + down] - 4.0f * s[i];
+			}
+		}
+		cumLaplacian_ = cumulativeSums(laplacian_);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the cumulative sums of the data along x, row by row.
+	 */
+	private double[] cumulativeSums(float[] data) {
+		final double[] cum = new double[data.length];
+		for (int y = 0; y < height_; y++) {
+			double acc = 0.0;
+			for (int i = y * width_, I = i + width_; i < I; i++) {
+				acc += data[i];
+				cum[i] = acc;
+			}
+		}
+		return cum;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the integral along x, from the left border of the image up to (x, y),
+	 * of the data whose cumulative sums are given. The cumulative sums are
+	 * interpolated linearly in both directions. If cum is null, the data are taken
+	 * to be one over the whole image.
+	 */
+	private double cumulative(double[] cum, double x, double y) {
+		final double u = x - 0.5;
+		final int i0 = (int) Math.floor(u);
+		final int j0 = (int) Math.floor(y);
+		final double tu = u - i0;
+		final double ty = y - j0;
+		return (1.0 - ty) * ((1.0 - tu) * cumulativeAt(cum, i0, j0) + tu * cumulativeAt(cum, i0 + 1, j0))
+				+ ty * ((1.0 - tu) * cumulativeAt(cum, i0, j0 + 1) + tu * cumulativeAt(cum, i0 + 1, j0 + 1));
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Bounds the error that the sampling of the contour makes on the sum and on the
+	 * difference between the area and the sum enclosed by the contour. Along x, the
+	 * interpolated cumulative sums grow by at most one per pixel, and the image
+	 * grows no faster than the area, so that only the trapezoidal integration along
+	 * the segments joining the samples can push the means out of [0, 1]. Its error
+	 * on a segment is bounded by |dy| (|dx| + |dy| rho) / 4, where rho is the
+	 * largest step of the cumulative sums from one row to the next around the
+	 * samples that end the segment.
+	 */
+	private double interpolationError(double[] xSkin, double[] ySkin, int[] index, int n) {
+		double error = 0.0;
+		int i = index[n - 1];
+		double rho = rowStep(null, xSkin[i], ySkin[i]) + rowStep(cumImage_, xSkin[i], ySkin[i]);
+		for (int k = 0; k < n; k++) {
+			final int next = index[k];
+			final double rhoNext = rowStep(null, xSkin[next], ySkin[next])
+					+ rowStep(cumImage_, xSkin[next], ySkin[next]);
+			final double dx = Math.abs(xSkin[next] - xSkin[i]);
+			final double dy = Math.abs(ySkin[next] - ySkin[i]);
+			error += 0.25 * dy * (dx + dy * Math.max(rho, rhoNext));
+			i = next;
+			rho = rhoNext;
+		}
+		return error;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the largest step from one row to the next of the cumulative sums
+	 * interpolated at (x, y).
+	 */
+	private double rowStep(double[] cum, double x, double y) {
+		final int i0 = (int) Math.floor(x - 0.5);
+		final int j0 = (int) Math.floor(y);
+		return Math.max(Math.abs(cumulativeAt(cum, i0, j0 + 1) - cumulativeAt(cum, i0, j0)),
+				Math.abs(cumulativeAt(cum, i0 + 1, j0 + 1) - cumulativeAt(cum, i0 + 1, j0)));
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the cumulative sum at pixel (i, j), extended by zero above, below and
+	 * left of the image, and by the sum of the row right of it.
+	 */
+	private double cumulativeAt(double[] cum, int i, int j) {
+		if (i < 0 || j < 0 || j >= height_) {
+			return 0.0;
+		}
+		if (i >= width_) {
+			i = width_ - 1;
+		}
+		return (cum == null) ? i + 1 : cum[j * width_ + i];
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the data interpolated bilinearly at (x, y), extended by zero outside
+	 * of the image. If data is null, the data are taken to be one over the whole
+	 * image.
+	 */
+	private double sample(float[] data, double x, double y) {
+		final int i0 = (int) Math.floor(x);
+		final int j0 = (int) Math.floor(y);
+		final double tx = x - i0;
+		final double ty = y - j0;
+		return (1.0 - ty) * ((1.0 - tx) * sampleAt(data, i0, j0) + tx * sampleAt(data, i0 + 1, j0))
+				+ ty * ((1.0 - tx) * sampleAt(data, i0, j0 + 1) + tx * sampleAt(data, i0 + 1, j0 + 1));
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the data at pixel (i, j), or zero outside of the image.
+	 */
+	private double sampleAt(float[] data, int i, int j) {
+		if (i < 0 || i >= width_ || j < 0 || j >= height_) {
+			return 0.0;
+		}
+		return (data == null) ? 1.0 : data[j * width_ + i];
+	}
+}
@@ -0,0 +1,111 @@
+package com.virginieuhlmann;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of the sampled basis functions shared by all spline
+ * models. The LUTs stored here are shared between model instances and must
+ * therefore never be modified once they have been put in the cache. Entries are
+ * evicted in least-recently-used order once the cache is full.
+ */
+final class SplineLUTCache {
+
+	/** Linear B-spline basis function. */
+	static final String BSPLINE1 = "BSpline1";
+	/** Cubic B-spline basis function. */
+	static final String BSPLINE3 = "BSpline3";
+	/** Exponential spline of order 3. */
+	static final String ESPLINE3 = "ESpline3";
+	/** Exponential spline of order 4. */
+	static final String ESPLINE4 = "ESpline4";
+	/** First cubic Hermite spline basis function. */
+	static final String HSPLINE31 = "HSpline31";
+	/** Second cubic Hermite spline basis function. */
+	static final String HSPLINE32 = "HSpline32";
+
+	/** Maximum number of LUTs kept in the cache. */
+	private static final int MAXENTRIES = 64;
+
+	/** LUTs indexed by basis function, number of coefficients and sampling rate. */
+	private static final Map<Key, double[]> cache_ = new LinkedHashMap<Key, double[]>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, double[]> eldest) {
+			return size() > MAXENTRIES;
+		}
+	};
+
+	// ============================================================================
+	// PUBLIC METHODS
+
+	/**
+	 * Returns the cached LUT of the basis function sampled at rate R, or
+	 * <code>null</code> if it has not been built yet. Basis functions that do not
+	 * depend on the number of coefficients should be looked up with M = 0.
+	 */
+	static synchronized double[] get(String basis, int M, int R) {
+		return cache_.get(new Key(basis, M, R));
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Stores the LUT of the basis function sampled at rate R. If another thread
+	 * stored the same LUT in the meantime, the LUT already in the cache is returned
+	 * so that all models share the same array.
+	 */
+	static synchronized double[] put(String basis, int M, int R, double[] lut) {
+		final Key key = new Key(basis, M, R);
+		final double[] cached = cache_.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		cache_.put(key, lut);
+		return lut;
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Removes all LUTs from the cache.
+	 */
+	static synchronized void clear() {
+		cache_.clear();
+	}
+
+	// ============================================================================
+	// PRIVATE CLASSES
+
+	/**
+	 * Identifies a LUT by its basis function, number of coefficients and sampling
+	 * rate.
+	 */
+	private static final class Key {
+
+		private final String basis_;
+		private final int M_;
+		private final int R_;
+
+		Key(String basis, int M, int R) {
+			basis_ = basis;
+			M_ = M;
+			R_ = R;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key k = (Key) o;
+			return M_ == k.M_ && R_ == k.R_ && basis_.equals(k.basis_);
+		}
+
+		@Override
+		public int hashCode() {
+			return (basis_.hashCode() * 31 + M_) * 31 + R_;
+		}
+	}
+}
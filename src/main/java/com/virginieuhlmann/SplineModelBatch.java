@@ -0,0 +1,263 @@
+package com.virginieuhlmann;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.process.ImageProcessor;
+import com.virginieuhlmann.snake2D.Snake2D;
+import com.virginieuhlmann.snake2D.Snake2DKeeper;
+import com.virginieuhlmann.snake2D.Snake2DLBFGSOptimizer;
+import com.virginieuhlmann.snake2D.Snake2DOptimizer;
+
+/**
+ * Fits spline models to every slice of a stack, or to every image of a folder,
+ * without interaction. The images are processed by a pool of threads; for each
+ * image, the initial models are copied, given the energy of the image, and
+ * optimized, from several starts if requested. The fitted models are handed to
+ * the output on the calling thread in the order of the images, as soon as they
+ * are available, and only a few images per thread are held at any time.
+ */
+final class SplineModelBatch {
+
+	/** Number of images in progress for each thread of the pool. */
+	private static final int IMAGES_PER_THREAD = 2;
+	/** Seed of the perturbations of the multi-start optimization. */
+	private static final long SEED = 0L;
+
+	/**
+	 * Creates the initial models of the images of a given size.
+	 */
+	interface Factory {
+		InteractiveSplineModel[] create(int width, int height);
+	}
+
+	/**
+	 * Receives the fitted models of the image of given index, which is the
+	 * number of the slice or the rank of the file in the folder, starting at one.
+	 */
+	interface Output {
+		void write(ImagePlus imp, int index, InteractiveSplineModel[] models);
+	}
+
+	/**
+	 * Provides the models fitted to the image of given index, or null if the
+	 * image is skipped.
+	 */
+	private interface Source {
+		Fit fit(int index);
+	}
+
+	/** Creates the initial models. */
+	private final Factory factory_;
+	/** Number of threads that fit the models. */
+	private final int threads_;
+	/** Number of starts of the optimization of each model. */
+	private final int starts_;
+	/** Initial models, for each size of image. */
+	private final HashMap<Dimension, InteractiveSplineModel[]> initialModels_;
+
+	/** Models fitted to one image. */
+	private static final class Fit {
+		ImagePlus imp_ = null;
+		InteractiveSplineModel[] models_ = null;
+	}
+
+	// ============================================================================
+	// PUBLIC METHODS
+
+	/**
+	 * Constructor. At least one thread and one start are used. With several
+	 * starts, each model is optimized as by Snake2DKeeper.optimize(Snake2D[],
+	 * Snake2DOptimizer[], int, long) on the thread of its image, and the same
+	 * seed is used for every image so that the results do not depend on the
+	 * number of threads.
+	 */
+	SplineModelBatch(Factory factory, int threads, int starts) {
+		factory_ = factory;
+		threads_ = Math.max(1, threads);
+		starts_ = Math.max(1, starts);
+		initialModels_ = new HashMap<Dimension, InteractiveSplineModel[]>();
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Returns the files of the folder whose name ends with the extension, in the
+	 * order of their names, or every file of the folder if the extension is
+	 * empty. Hidden files and folders are left out.
+	 */
+	static File[] listFiles(File folder, final String extension) {
+		final File[] files = folder.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				final String name = file.getName();
+				return (file.isFile() && !name.startsWith(".") && name.toLowerCase().endsWith(extension));
+			}
+		});
+		if (files == null) {
+			return (new File[0]);
+		}
+		Arrays.sort(files);
+		return (files);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Fits the models to every image file of the folder. Files that ImageJ cannot
+	 * open are skipped.
+	 */
+	void processFolder(File folder, Output output) {
+		final File[] files = listFiles(folder, "");
+		if (files.length == 0) {
+			IJ.error("No image to process in " + folder.getPath() + ".");
+			return;
+		}
+		process(files.length, output, new Source() {
+			@Override
+			public Fit fit(int index) {
+				final ImagePlus imp = IJ.openImage(files[index - 1].getPath());
+				if (imp == null) {
+					IJ.log("Skipping " + files[index - 1].getName() + ", which is not an image.");
+					return (null);
+				}
+				return (SplineModelBatch.this.fit(imp, imp.getProcessor()));
+			}
+		});
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Fits the models to every slice of the stack of the image.
+	 */
+	void processStack(final ImagePlus imp, Output output) {
+		final ImageStack stack = imp.getStack();
+		process(stack.getSize(), output, new Source() {
+			@Override
+			public Fit fit(int index) {
+				return (SplineModelBatch.this.fit(imp, stack.getProcessor(index)));
+			}
+		});
+	}
+
+	// ============================================================================
+	// PRIVATE METHODS
+
+	/**
+	 * Returns copies of the initial models of the images of the given size,
+	 * which are created at the first request.
+	 */
+	private synchronized InteractiveSplineModel[] copyInitialModels(int width, int height) {
+		final Dimension size = new Dimension(width, height);
+		InteractiveSplineModel[] models = initialModels_.get(size);
+		if (models == null) {
+			models = factory_.create(width, height);
+			initialModels_.put(size, models);
+		}
+		final InteractiveSplineModel[] copies = new InteractiveSplineModel[models.length];
+		for (int n = 0; n < models.length; n++) {
+			copies[n] = models[n].copy();
+		}
+		return (copies);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Fits copies of the initial models to the image data. The energy is released
+	 * once the models are fitted, so that the queued results do not hold it.
+	 */
+	private Fit fit(ImagePlus imp, ImageProcessor ip) {
+		final SplineEnergy energy = new SplineEnergy(ip);
+		final Fit fit = new Fit();
+		fit.imp_ = imp;
+		fit.models_ = copyInitialModels(ip.getWidth(), ip.getHeight());
+		for (InteractiveSplineModel model : fit.models_) {
+			model.setEnergy(energy);
+			if (starts_ > 1) {
+				new Snake2DKeeper().optimize(new Snake2D[] { model },
+						new Snake2DOptimizer[] { new Snake2DLBFGSOptimizer() }, starts_, SEED);
+			} else {
+				new Snake2DKeeper().optimize(model, new Snake2DLBFGSOptimizer());
+			}
+			model.setEnergy(null);
+		}
+		return (fit);
+	}
+
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Fits the models to the images 1 to count of the source, and writes the
+	 * results in order. Pressing Escape stops the submission of new images; the
+	 * ones in progress are still written. An image whose fit fails is reported
+	 * in the log and skipped.
+	 */
+	private void process(final int count, Output output, final Source source) {
+		final ExecutorService pool = Executors.newFixedThreadPool(threads_, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "Spline model batch");
+				thread.setDaemon(true);
+				return (thread);
+			}
+		});
+		final ArrayDeque<Future<Fit>> pending = new ArrayDeque<Future<Fit>>();
+		final long start = System.currentTimeMillis();
+		int submitted = 0;
+		int written = 0;
+		int fitted = 0;
+		boolean aborted = false;
+		IJ.resetEscape();
+		try {
+			while (written < submitted || (!aborted && submitted < count)) {
+				while (!aborted && submitted < count && pending.size() < IMAGES_PER_THREAD * threads_) {
+					final int index = ++submitted;
+					pending.add(pool.submit(new Callable<Fit>() {
+						@Override
+						public Fit call() {
+							return (source.fit(index));
+						}
+					}));
+				}
+				Fit fit = null;
+				try {
+					fit = pending.remove().get();
+				} catch (ExecutionException e) {
+					IJ.log("Could not fit image " + (written + 1) + ": " + e.getCause());
+				}
+				written++;
+				if (fit != null) {
+					output.write(fit.imp_, written, fit.models_);
+					fitted++;
+				}
+				IJ.showProgress(written, count);
+				IJ.showStatus("Fitted " + written + "/" + count + " images");
+				if (!aborted && IJ.escapePressed()) {
+					aborted = true;
+					IJ.log("Batch interrupted by the user after " + submitted + " images.");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			pool.shutdownNow();
+		}
+		IJ.log("Fitted " + fitted + " of " + count + " images in "
+				+ IJ.d2s((System.currentTimeMillis() - start) / 1000.0) + " s.");
+	}
+}
@@ -53,10 +53,13 @@ public class HSnake2DKeeper implements Observer {
 	 * <code>Snake2D.isAlive()</code> return <code>false</code>. This request will
 	 * be honored at the next user attempt to modify the snake.
 	 *
-	 * @param snake   The snake to Handle.
-	 * @param display A mandatory <code>ImagePlus</code> object over which the
-	 *                handles used to interactively manipulate the snake will be
-	 *                overlaid.
+	 * @param snake         The snake to Handle.
+	 * @param display       A mandatory <code>ImagePlus</code> object over which
+	 *                      the handles used to interactively manipulate the snake
+	 *                      will be overlaid.
+	 * @param tangentWeight The factor by which the tangents are scaled when they
+	 *                      are drawn from their position, or 0 to leave them out
+	 *                      of the global transformations.
 	 * @see Snake2D#isAlive
 	 * @see Snake2D#getNodes
 	 * @see Snake2D#setNodes
@@ -66,27 +69,69 @@ public class HSnake2DKeeper implements Observer {
 		if (snake == null) {
 			return;
 		}
+		interact(new Snake2D[] { snake }, display, tangentWeight);
+	} /* end interact */
+
+	/*------------------------------------------------------------------*/
+	/*********************************************************************
+	 * This method lets the user interact with several Hermite snakes at once.
+	 * The handles of all the snakes are overlaid on the image and share one
+	 * toolbar. A node is picked among all the snakes; the snake it belongs to
+	 * becomes the one that is moved, resized, rotated, or stretched. The nodes of
+	 * each snake are its positions followed by as many tangents, and each tangent
+	 * is paired with a position of its own snake. Only the snakes whose nodes
+	 * were modified are updated through <code>Snake2D.setNodes()</code>. The
+	 * session ends for all the snakes at once, and each of them receives the same
+	 * report through <code>Snake2D.updateStatus()</code>.
+	 *
+	 * @param snakes        The snakes to handle.
+	 * @param display       A mandatory <code>ImagePlus</code> object over which
+	 *                      the handles used to interactively manipulate the
+	 *                      snakes will be overlaid.
+	 * @param tangentWeight The factor by which the tangents are scaled when they
+	 *                      are drawn from their position, or 0 to leave them out
+	 *                      of the global transformations.
+	 * @see #interact(Snake2D, ImagePlus, double)
+	 ********************************************************************/
+	public void interact(final Snake2D[] snakes, final ImagePlus display, final double tangentWeight) {
+		if ((snakes == null) || (snakes.length == 0)) {
+			return;
+		}
+		for (int s = 0, S = snakes.length; (s < S); s++) {
+			if (snakes[s] == null) {
+				return;
+			}
+		}
 		this.display = display;
 		canceledByUser = false;
-		snakeDied = !snake.isAlive();
+		snakeDied = false;
+		for (int s = 0, S = snakes.length; (s < S); s++) {
+			snakeDied |= !snakes[s].isAlive();
+		}
 		optimalSnakeFound = false;
 		final Double energy = null;
 		if ((display == null) || snakeDied) {
-			snake.updateStatus(canceledByUser, snakeDied, optimalSnakeFound, energy);
+			for (int s = 0, S = snakes.length; (s < S); s++) {
+				snakes[s].updateStatus(canceledByUser, snakeDied, optimalSnakeFound, energy);
+			}
 			return;
 		}
 		display.killRoi();
 		optimizing = false;
 		singleShot = true;
 		sh = null;
-		final Snake2DNode[] youngSnake = snake.getNodes();
-		final int K = youngSnake.length;
-		final Snake2DNode[] X = new Snake2DNode[K];
-		for (int k = 0; (k < K); k++) {
-			X[k] = new Snake2DNode(youngSnake[k].x, youngSnake[k].y, youngSnake[k].frozen, youngSnake[k].hidden);
+		final Snake2DNode[][] X = new Snake2DNode[snakes.length][];
+		for (int s = 0, S = snakes.length; (s < S); s++) {
+			final Snake2DNode[] youngSnake = snakes[s].getNodes();
+			final int K = youngSnake.length;
+			X[s] = new Snake2DNode[K];
+			for (int k = 0; (k < K); k++) {
+				X[s][k] = new Snake2DNode(youngSnake[k].x, youngSnake[k].y, youngSnake[k].frozen,
+						youngSnake[k].hidden);
+			}
 		}
 		tb = new snake2DEditToolbar(Toolbar.getInstance(), this);
-		final snake2DPointHandler ph = new snake2DPointHandler(display, snake, X, tb, this, tangentWeight);
+		final snake2DPointHandler ph = new snake2DPointHandler(display, snakes, X, tb, this, tangentWeight);
 		final snake2DPointAction pa = new snake2DPointAction(display, ph, tb, this);
 		ph.setPointAction(pa);
 		ph.activateDisplay();
@@ -97,8 +142,10 @@ public class HSnake2DKeeper implements Observer {
 			}
 		} catch (InterruptedException e) {
 		}
-		tb.terminateInteraction(snake, ph);
-		snake.updateStatus(canceledByUser, snakeDied, optimalSnakeFound, energy);
+		tb.terminateInteraction(snakes, ph);
+		for (int s = 0, S = snakes.length; (s < S); s++) {
+			snakes[s].updateStatus(canceledByUser, snakeDied, optimalSnakeFound, energy);
+		}
 	} /* end interact */
 
 	/*
@@ -316,11 +316,13 @@ public class snake2DEditToolbar extends Canvas implements AdjustmentListener, Mo
 	} /* end setWindow */
 
 	/*------------------------------------------------------------------*/
-	protected void terminateInteraction(final Snake2D snake, final snake2DPointHandler ph) {
+	protected void terminateInteraction(final Snake2D[] snakes, final snake2DPointHandler ph) {
 		cleanUpListeners();
 		restorePreviousToolbar();
 		Toolbar.getInstance().repaint();
-		snake.setNodes(ph.getPoints());
+		for (int s = 0, S = snakes.length; (s < S); s++) {
+			snakes[s].setNodes(ph.getPoints(s));
+		}
 		ph.deactivateDisplay();
 	} /* end terminateInteraction */
 
@@ -3,6 +3,8 @@ package com.virginieuhlmann.hsnake2D;
 import com.virginieuhlmann.snake2D.Snake2D;
 import com.virginieuhlmann.snake2D.Snake2DNode;
 import com.virginieuhlmann.snake2D.Snake2DScale;
+import com.virginieuhlmann.snake2D.snake2DHandleIndex;
+import com.virginieuhlmann.snake2D.snake2DScaleRenderer;
 import ij.ImagePlus;
 import ij.gui.PolygonRoi;
 
@@ -37,12 +39,21 @@ public class snake2DPointHandler extends PolygonRoi
 	private Point2D.Double[] snakeHull = new Point2D.Double[4];
 	private HSnake2DKeeper keeper = null;
 	private Snake2DNode[] point = null;
-	private Snake2D snake = null;
+	private Snake2DNode[][] points = null;
+	private Snake2DScale[][] scales = null;
+	private snake2DScaleRenderer[] renderers = null;
+	private Snake2D[] snakes = null;
 	private boolean started = false;
 	private int closestHandle = 0;
 	private int currentPoint = 0;
+	private int currentSnake = 0;
+	private int[] first = null;
+	private int[] modifications = null;
+	private int[] owner = null;
+	private int[] updates = null;
 	private snake2DEditToolbar tb = null;
 	private snake2DPointAction pa = null;
+	private snake2DHandleIndex handles = null;
 	private static final int CROSS_HALFSIZE = 5;
 	private static final long serialVersionUID = 1L;
 	private double tangentWeight_ = 0.0;
@@ -53,18 +64,39 @@ public class snake2DPointHandler extends PolygonRoi
 	 * ....................................................................
 	 */
 	/*------------------------------------------------------------------*/
-	protected snake2DPointHandler(final ImagePlus display, final Snake2D snake, final Snake2DNode[] point,
+	protected snake2DPointHandler(final ImagePlus display, final Snake2D[] snakes, final Snake2DNode[][] points,
 			final snake2DEditToolbar tb, final HSnake2DKeeper keeper, double tangentWeight_) {
 		super(0, 0, display);
 		this.display = display;
-		this.snake = snake;
-		this.point = point;
+		this.snakes = snakes;
+		this.points = points;
 		this.tangentWeight_ = tangentWeight_;
 		this.keeper = keeper;
 		this.tb = tb;
-		if (point == null) {
-			this.point = new Snake2DNode[0];
+		final int S = snakes.length;
+		modifications = new int[S];
+		updates = new int[S];
+		scales = new Snake2DScale[S][];
+		renderers = new snake2DScaleRenderer[S];
+		first = new int[S + 1];
+		for (int s = 0; (s < S); s++) {
+			if (points[s] == null) {
+				points[s] = new Snake2DNode[0];
+			}
+			modifications[s] = 1;
+			renderers[s] = new snake2DScaleRenderer();
+			first[s + 1] = first[s] + points[s].length;
 		}
+		point = new Snake2DNode[first[S]];
+		owner = new int[first[S]];
+		for (int s = 0; (s < S); s++) {
+			for (int k = first[s], K = first[s + 1]; (k < K); k++) {
+				point[k] = points[s][k - first[s]];
+				owner[k] = s;
+			}
+		}
+		handles = new snake2DHandleIndex(this.point.length);
+		indexHandles();
 		for (int k = 0, K = snakeHull.length; (k < K); k++) {
 			snakeHull[k] = new Point2D.Double();
 		}
@@ -82,37 +114,25 @@ public class snake2DPointHandler extends PolygonRoi
 			final double mag = ic.getMagnification();
 			final int dx = (int) (mag / 2.0);
 			final int dy = (int) (mag / 2.0);
-			snake.setNodes(point);
-			final boolean snakeDied = !snake.isAlive();
+			boolean snakeDied = false;
+			for (int s = 0, S = snakes.length; (s < S); s++) {
+				updateSnake(s);
+				snakeDied |= !snakes[s].isAlive();
+			}
 			keeper.setSnakeDied(snakeDied);
 			if (snakeDied) {
 				return;
 			}
-			Snake2DScale[] skin = snake.getScales();
-			if (skin == null) {
-				skin = new Snake2DScale[0];
-			}
-			for (int k = 0, K = skin.length; (k < K); k++) {
-				final Color scaleColor = skin[k].bestAttemptColor;
-				if (scaleColor == null) {
-					g.setColor(ROIColor);
-				} else {
-					g.setColor(scaleColor);
-				}
-				final int[] xpoints = skin[k].xpoints;
-				final int[] ypoints = skin[k].ypoints;
-				final Polygon poly = new Polygon();
-				for (int n = 0, N = skin[k].npoints; (n < N); n++) {
-					poly.addPoint(ic.screenX(xpoints[n]) + dx, ic.screenY(ypoints[n]) + dy);
-				}
-				if (skin[k].closed && skin[k].filled) {
-					g.fillPolygon(poly);
-				} else {
-					if (skin[k].closed) {
-						g.drawPolygon(poly);
+			for (int s = 0, S = snakes.length; (s < S); s++) {
+				final Snake2DScale[] skin = scales[s];
+				for (int k = 0, K = skin.length; (k < K); k++) {
+					final Color scaleColor = skin[k].bestAttemptColor;
+					if (scaleColor == null) {
+						g.setColor(ROIColor);
 					} else {
-						g.drawPolyline(poly.xpoints, poly.ypoints, poly.npoints);
+						g.setColor(scaleColor);
 					}
+					renderers[s].draw(g, ic, skin[k], k);
 				}
 			}
 			g.setColor(ROIColor);
@@ -155,15 +175,8 @@ public class snake2DPointHandler extends PolygonRoi
 				}
 			}
 			for (int k = 0, K = point.length; (k < K); k++) {
-				if (!point[k].hidden && k < point.length / 2) {
-					final Point p;
-					if (k >= point.length / 2 && tangentWeight_ != 0.0) {
-						p = new Point(
-								(int) round(point[k - point.length / 2].getX() + tangentWeight_ * point[k].getX()),
-								(int) round(point[k - point.length / 2].getY() + tangentWeight_ * point[k].getY()));
-					} else {
-						p = new Point((int) round(point[k].getX()), (int) round(point[k].getY()));
-					}
+				if (!point[k].hidden && (k - first[owner[k]]) < half(owner[k])) {
+					final Point p = new Point((int) round(point[k].getX()), (int) round(point[k].getY()));
 
 					g.setColor(Color.BLACK);
 					g.fillOval(ic.screenX(p.x) - (int) (0.5 * CROSS_HALFSIZE) - 1 + dx,
@@ -221,24 +234,11 @@ public class snake2DPointHandler extends PolygonRoi
 		}
 		x = ic.offScreenX(x);
 		y = ic.offScreenY(y);
-		double distanceSq = point[currentPoint].distanceSq(x, y);
-		for (int k = 0, K = point.length; (k < K); k++) {
-			if (k >= point.length / 2 && tangentWeight_ != 0.0) {
-				Snake2DNode pp = new Snake2DNode(point[k - point.length / 2].x + tangentWeight_ * point[k].x,
-						point[k - point.length / 2].y + tangentWeight_ * point[k].y);
-				final double candidateSq = pp.distanceSq(x, y);
-				if (candidateSq < distanceSq) {
-					distanceSq = candidateSq;
-					currentPoint = k;
-				}
-			} else {
-				final double candidateSq = point[k].distanceSq(x, y);
-				if (candidateSq < distanceSq) {
-					distanceSq = candidateSq;
-					currentPoint = k;
-				}
-			}
+		final int k = handles.findClosest(x, y, point[currentPoint].distanceSq(x, y));
+		if (0 <= k) {
+			currentPoint = k;
 		}
+		currentSnake = owner[currentPoint];
 	} /* end findClosestPoint */
 
 	/*------------------------------------------------------------------*/
@@ -252,10 +252,22 @@ public class snake2DPointHandler extends PolygonRoi
 	} /* end getPoint */
 
 	/*------------------------------------------------------------------*/
-	protected Snake2DNode[] getPoints() {
-		return (point);
+	protected Snake2DNode[] getPoints(final int s) {
+		return (points[s]);
 	} /* end getPoints */
 
+	/*------------------------------------------------------------------*/
+	protected void indexHandles() {
+		for (int k = 0, K = point.length; (k < K); k++) {
+			final int j = position(k);
+			if (0 <= j) {
+				handles.put(k, point[j].x + tangentWeight_ * point[k].x, point[j].y + tangentWeight_ * point[k].y);
+			} else {
+				handles.put(k, point[k].x, point[k].y);
+			}
+		}
+	} /* end indexHandles */
+
 	/*------------------------------------------------------------------*/
 	protected void movePoint(int x, int y) {
 		if (!point[currentPoint].frozen) {
@@ -265,12 +277,18 @@ public class snake2DPointHandler extends PolygonRoi
 			x = (display.getWidth() <= x) ? (display.getWidth() - 1) : (x);
 			y = (y < 0) ? (0) : (y);
 			y = (display.getHeight() <= y) ? (display.getHeight() - 1) : (y);
-			if (currentPoint >= point.length / 2 && tangentWeight_ != 0.0) {
-				point[currentPoint].setLocation((1.0 / tangentWeight_) * (x - point[currentPoint - point.length / 2].x),
-						(1.0 / tangentWeight_) * (y - point[currentPoint - point.length / 2].y));
+			final int j = position(currentPoint);
+			if (0 <= j) {
+				point[currentPoint].setLocation((1.0 / tangentWeight_) * (x - point[j].x),
+						(1.0 / tangentWeight_) * (y - point[j].y));
 			} else {
 				point[currentPoint].setLocation(x, y);
 			}
+			moveHandle(currentPoint);
+			if ((j < 0) && (tangentWeight_ != 0.0)) {
+				moveHandle(currentPoint + half(owner[currentPoint]));
+			}
+			modifications[owner[currentPoint]]++;
 		}
 	} /* end movePoint */
 
@@ -280,13 +298,11 @@ public class snake2DPointHandler extends PolygonRoi
 		final int dx = (int) (mag / 2.0);
 		final int dy = (int) (mag / 2.0);
 		final Polygon poly = new Polygon();
-		for (int k = 0, K = point.length; (k < K); k++) {
-			if (k >= point.length / 2 && tangentWeight_ != 0.0) {
-				poly.addPoint(
-						ic.screenX((int) round(tangentWeight_ * point[k].getX() + point[k - point.length / 2].getX()))
-								+ dx,
-						ic.screenY((int) round(tangentWeight_ * point[k].getY() + point[k - point.length / 2].getY()))
-								+ dy);
+		for (int k = first[currentSnake], K = first[currentSnake + 1]; (k < K); k++) {
+			final int j = position(k);
+			if (0 <= j) {
+				poly.addPoint(ic.screenX((int) round(tangentWeight_ * point[k].getX() + point[j].getX())) + dx,
+						ic.screenY((int) round(tangentWeight_ * point[k].getY() + point[j].getY())) + dy);
 			} else {
 				poly.addPoint(ic.screenX((int) round(point[k].getX())) + dx,
 						ic.screenY((int) round(point[k].getY())) + dy);
@@ -375,22 +391,19 @@ public class snake2DPointHandler extends PolygonRoi
 		final double x0 = hullCenter.x / mag + srcRect.x;
 		final double y0 = hullCenter.y / mag + srcRect.y;
 
-		int K = point.length;
-		if (tangentWeight_ != 0.0) {
-			K /= 2;
-		}
-		for (int k = 0; k < K; k++) {
+		final int T = half(currentSnake);
+		for (int k = first[currentSnake], K = first[currentSnake] + positions(currentSnake); (k < K); k++) {
 			double xi = point[k].x;
 			double yi = point[k].y;
 			if (!point[k].frozen) {
 				point[k].setLocation(x0 + scale * (point[k].x - x0), y0 + scale * (point[k].y - y0));
 			}
 			if (tangentWeight_ != 0.0) {
-				if (!point[k + point.length / 2].frozen) {
-					point[k + point.length / 2].setLocation((1.0 / tangentWeight_)
-							* (x0 + scale * (xi + tangentWeight_ * point[k + point.length / 2].x - x0) - point[k].x),
+				if (!point[k + T].frozen) {
+					point[k + T].setLocation((1.0 / tangentWeight_)
+							* (x0 + scale * (xi + tangentWeight_ * point[k + T].x - x0) - point[k].x),
 							(1.0 / tangentWeight_) * (y0
-									+ scale * (yi + tangentWeight_ * point[k + point.length / 2].y - y0) - point[k].y));
+									+ scale * (yi + tangentWeight_ * point[k + T].y - y0) - point[k].y));
 				}
 			}
 		}
@@ -398,6 +411,8 @@ public class snake2DPointHandler extends PolygonRoi
 			snakeHull[k].x = hullCenter.x + scale * (snakeHull[k].x - hullCenter.x);
 			snakeHull[k].y = hullCenter.y + scale * (snakeHull[k].y - hullCenter.y);
 		}
+		indexHandles();
+		modifications[currentSnake]++;
 	} /* end resizePoints */
 
 	/*------------------------------------------------------------------*/
@@ -415,11 +430,8 @@ public class snake2DPointHandler extends PolygonRoi
 		final double x0 = hullCenter.x / mag + srcRect.x;
 		final double y0 = hullCenter.y / mag + srcRect.y;
 
-		int K = point.length;
-		if (tangentWeight_ != 0.0) {
-			K /= 2;
-		}
-		for (int k = 0; k < K; k++) {
+		final int T = half(currentSnake);
+		for (int k = first[currentSnake], K = first[currentSnake] + positions(currentSnake); (k < K); k++) {
 			final double xi = point[k].x;
 			final double yi = point[k].y;
 
@@ -430,15 +442,17 @@ public class snake2DPointHandler extends PolygonRoi
 
 			}
 			if (tangentWeight_ != 0.0) {
-				if (!point[k + point.length / 2].frozen) {
-					double xt = xi + tangentWeight_ * point[k + point.length / 2].x - x0;
-					double yt = yi + tangentWeight_ * point[k + point.length / 2].y - y0;
-					point[k + point.length / 2].setLocation(
+				if (!point[k + T].frozen) {
+					double xt = xi + tangentWeight_ * point[k + T].x - x0;
+					double yt = yi + tangentWeight_ * point[k + T].y - y0;
+					point[k + T].setLocation(
 							(1.0 / tangentWeight_) * ((xt * c - yt * s + x0) - point[k].x),
 							(1.0 / tangentWeight_) * ((xt * s + yt * c + y0) - point[k].y));
 				}
 			}
 		}
+		indexHandles();
+		modifications[currentSnake]++;
 	} /* end rotatePoints */
 
 	/*------------------------------------------------------------------*/
@@ -458,21 +472,18 @@ public class snake2DPointHandler extends PolygonRoi
 			final double scale = ((y - snakeHull[2].y) / (snakeHull[1].y - snakeHull[2].y));
 			final double y0 = snakeHull[2].y / mag + srcRect.y;
 
-			int K = point.length;
-			if (tangentWeight_ != 0.0) {
-				K /= 2;
-			}
-			for (int k = 0; k < K; k++) {
+			final int T = half(currentSnake);
+			for (int k = first[currentSnake], K = first[currentSnake] + positions(currentSnake); (k < K); k++) {
 				double yi = point[k].y;
 
 				if (!point[k].frozen) {
 					point[k].setLocation(point[k].x, y0 + scale * (point[k].y - y0));
 				}
 				if (tangentWeight_ != 0.0) {
-					if (!point[k + point.length / 2].frozen) {
-						point[k + point.length / 2].setLocation(point[k + point.length / 2].x,
+					if (!point[k + T].frozen) {
+						point[k + T].setLocation(point[k + T].x,
 								(1.0 / tangentWeight_)
-										* (y0 + scale * (yi + tangentWeight_ * point[k + point.length / 2].y - y0)
+										* (y0 + scale * (yi + tangentWeight_ * point[k + T].y - y0)
 												- point[k].y));
 					}
 				}
@@ -488,20 +499,17 @@ public class snake2DPointHandler extends PolygonRoi
 			final double scale = ((x - snakeHull[0].x) / (snakeHull[1].x - snakeHull[0].x));
 			final double x0 = snakeHull[0].x / mag + srcRect.x;
 
-			int K = point.length;
-			if (tangentWeight_ != 0.0) {
-				K /= 2;
-			}
-			for (int k = 0; k < K; k++) {
+			final int T = half(currentSnake);
+			for (int k = first[currentSnake], K = first[currentSnake] + positions(currentSnake); (k < K); k++) {
 				double xi = point[k].x;
 				if (!point[k].frozen) {
 					point[k].setLocation(x0 + scale * (point[k].x - x0), point[k].y);
 				}
 				if (tangentWeight_ != 0.0) {
-					if (!point[k + point.length / 2].frozen) {
-						point[k + point.length / 2].setLocation((1.0 / tangentWeight_) * (x0
-								+ scale * (xi + tangentWeight_ * point[k + point.length / 2].x - x0) - point[k].x),
-								point[k + point.length / 2].y);
+					if (!point[k + T].frozen) {
+						point[k + T].setLocation((1.0 / tangentWeight_) * (x0
+								+ scale * (xi + tangentWeight_ * point[k + T].x - x0) - point[k].x),
+								point[k + T].y);
 					}
 				}
 			}
@@ -516,20 +524,17 @@ public class snake2DPointHandler extends PolygonRoi
 			final double scale = ((y - snakeHull[1].y) / (snakeHull[2].y - snakeHull[1].y));
 			final double y0 = snakeHull[1].y / mag + srcRect.y;
 
-			int K = point.length;
-			if (tangentWeight_ != 0.0) {
-				K /= 2;
-			}
-			for (int k = 0; k < K; k++) {
+			final int T = half(currentSnake);
+			for (int k = first[currentSnake], K = first[currentSnake] + positions(currentSnake); (k < K); k++) {
 				double yi = point[k].y;
 				if (!point[k].frozen) {
 					point[k].setLocation(point[k].x, y0 + scale * (point[k].y - y0));
 				}
 				if (tangentWeight_ != 0.0) {
-					if (!point[k + point.length / 2].frozen) {
-						point[k + point.length / 2].setLocation(point[k + point.length / 2].x,
+					if (!point[k + T].frozen) {
+						point[k + T].setLocation(point[k + T].x,
 								(1.0 / tangentWeight_)
-										* (y0 + scale * (yi + tangentWeight_ * point[k + point.length / 2].y - y0)
+										* (y0 + scale * (yi + tangentWeight_ * point[k + T].y - y0)
 												- point[k].y));
 					}
 				}
@@ -545,20 +550,17 @@ public class snake2DPointHandler extends PolygonRoi
 			final double scale = ((x - snakeHull[1].x) / (snakeHull[0].x - snakeHull[1].x));
 			final double x0 = snakeHull[1].x / mag + srcRect.x;
 
-			int K = point.length;
-			if (tangentWeight_ != 0.0) {
-				K /= 2;
-			}
-			for (int k = 0; k < K; k++) {
+			final int T = half(currentSnake);
+			for (int k = first[currentSnake], K = first[currentSnake] + positions(currentSnake); (k < K); k++) {
 				double xi = point[k].x;
 				if (!point[k].frozen) {
 					point[k].setLocation(x0 + scale * (point[k].x - x0), point[k].y);
 				}
 				if (tangentWeight_ != 0.0) {
-					if (!point[k + point.length / 2].frozen) {
-						point[k + point.length / 2].setLocation((1.0 / tangentWeight_) * (x0
-								+ scale * (xi + tangentWeight_ * point[k + point.length / 2].x - x0) - point[k].x),
-								point[k + point.length / 2].y);
+					if (!point[k + T].frozen) {
+						point[k + T].setLocation((1.0 / tangentWeight_) * (x0
+								+ scale * (xi + tangentWeight_ * point[k + T].x - x0) - point[k].x),
+								point[k + T].y);
 					}
 				}
 			}
@@ -567,21 +569,85 @@ public class snake2DPointHandler extends PolygonRoi
 			break;
 		}
 		}
+		indexHandles();
+		modifications[currentSnake]++;
 	} /* end stretchPoints */
 
 	/*------------------------------------------------------------------*/
 	protected void translatePoints(int dx, int dy) {
 		dx = (int) round(dx / ic.getMagnification());
 		dy = (int) round(dy / ic.getMagnification());
-		int K = point.length;
-		if (tangentWeight_ != 0.0) {
-			K /= 2;
-		}
-		for (int k = 0; k < K; k++) {
+		for (int k = first[currentSnake], K = first[currentSnake] + positions(currentSnake); (k < K); k++) {
 			if (!point[k].frozen) {
 				point[k].setLocation(point[k].x + dx, point[k].y + dy);
 			}
 		}
+		indexHandles();
+		modifications[currentSnake]++;
 	} /* end translatePoints */
 
+	/*
+	 * ....................................................................
+	 * private methods
+	 * ....................................................................
+	 */
+	/*------------------------------------------------------------------*/
+	private void moveHandle(final int k) {
+		final int j = position(k);
+		if (0 <= j) {
+			handles.move(k, point[j].x + tangentWeight_ * point[k].x, point[j].y + tangentWeight_ * point[k].y);
+		} else {
+			handles.move(k, point[k].x, point[k].y);
+		}
+	} /* end moveHandle */
+
+	/*------------------------------------------------------------------*/
+	/**
+	 * Returns the number of positions of the s-th snake, whose nodes are its
+	 * positions followed by as many tangents.
+	 */
+	private int half(final int s) {
+		return ((first[s + 1] - first[s]) / 2);
+	} /* end half */
+
+	/*------------------------------------------------------------------*/
+	/**
+	 * Returns the index of the position to which the k-th node is attached if it
+	 * is a tangent drawn with a nonzero weight, and -1 otherwise.
+	 */
+	private int position(final int k) {
+		final int T = half(owner[k]);
+		if ((tangentWeight_ == 0.0) || ((k - first[owner[k]]) < T)) {
+			return (-1);
+		}
+		return (k - T);
+	} /* end position */
+
+	/*------------------------------------------------------------------*/
+	/**
+	 * Returns the number of nodes of the s-th snake that the global
+	 * transformations move directly: its positions when the tangents are drawn,
+	 * and all its nodes otherwise.
+	 */
+	private int positions(final int s) {
+		return ((tangentWeight_ != 0.0) ? (half(s)) : (first[s + 1] - first[s]));
+	} /* end positions */
+
+	/*------------------------------------------------------------------*/
+	/**
+	 * Pushes the nodes of the s-th snake and fetches its scales, but only if the
+	 * nodes were modified since they were last pushed.
+	 */
+	private void updateSnake(final int s) {
+		if (updates[s] == modifications[s]) {
+			return;
+		}
+		updates[s] = modifications[s];
+		snakes[s].setNodes(points[s]);
+		scales[s] = snakes[s].getScales();
+		if (scales[s] == null) {
+			scales[s] = new Snake2DScale[0];
+		}
+	} /* end updateSnake */
+
 } /* end class snake2DPointHandler */
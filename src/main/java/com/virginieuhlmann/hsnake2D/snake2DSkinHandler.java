@@ -2,6 +2,7 @@ package com.virginieuhlmann.hsnake2D;
 
 import com.virginieuhlmann.snake2D.Snake2D;
 import com.virginieuhlmann.snake2D.Snake2DScale;
+import com.virginieuhlmann.snake2D.snake2DScaleRenderer;
 import ij.ImagePlus;
 import ij.gui.PolygonRoi;
 
@@ -35,9 +36,11 @@ public class snake2DSkinHandler extends PolygonRoi
 	 */
 	private ImagePlus display = null;
 	private HSnake2DKeeper keeper = null;
-	private Snake2DScale[] bestSkin = null;
+	private volatile Snake2DScale[] bestSkin = null;
 	private Snake2D snake = null;
 	private boolean started = false;
+	private final snake2DScaleRenderer bestSkinRenderer = new snake2DScaleRenderer();
+	private final snake2DScaleRenderer skinRenderer = new snake2DScaleRenderer();
 
 	/*
 	 * ....................................................................
@@ -66,13 +69,11 @@ public class snake2DSkinHandler extends PolygonRoi
 			if (snakeDied) {
 				return;
 			}
+			final Snake2DScale[] bestSkin = this.bestSkin;
 			Snake2DScale[] skin = snake.getScales();
 			if (skin == null) {
 				skin = new Snake2DScale[0];
 			}
-			final double mag = ic.getMagnification();
-			final int dx = (int) (mag / 2.0);
-			final int dy = (int) (mag / 2.0);
 			for (int k = 0, K = skin.length; (k < K); k++) {
 				Color scaleColor = skin[k].currentAttemptColor;
 				if (scaleColor == null) {
@@ -96,21 +97,7 @@ public class snake2DSkinHandler extends PolygonRoi
 						g.setColor(scaleColor);
 					}
 				}
-				final int[] xpoints = skin[k].xpoints;
-				final int[] ypoints = skin[k].ypoints;
-				final Polygon poly = new Polygon();
-				for (int n = 0, N = skin[k].npoints; (n < N); n++) {
-					poly.addPoint(ic.screenX(xpoints[n]) + dx, ic.screenY(ypoints[n]) + dy);
-				}
-				if (skin[k].closed && skin[k].filled) {
-					g.fillPolygon(poly);
-				} else {
-					if (skin[k].closed) {
-						g.drawPolygon(poly);
-					} else {
-						g.drawPolyline(poly.xpoints, poly.ypoints, poly.npoints);
-					}
-				}
+				skinRenderer.draw(g, ic, skin[k], k);
 			}
 			if (bestSkin != null) {
 				for (int k = 0, K = bestSkin.length; (k < K); k++) {
@@ -120,21 +107,7 @@ public class snake2DSkinHandler extends PolygonRoi
 					} else {
 						g.setColor(scaleColor);
 					}
-					final int[] xpoints = bestSkin[k].xpoints;
-					final int[] ypoints = bestSkin[k].ypoints;
-					final Polygon poly = new Polygon();
-					for (int n = 0, N = bestSkin[k].npoints; (n < N); n++) {
-						poly.addPoint(ic.screenX(xpoints[n]) + dx, ic.screenY(ypoints[n]) + dy);
-					}
-					if (bestSkin[k].closed && bestSkin[k].filled) {
-						g.fillPolygon(poly);
-					} else {
-						if (bestSkin[k].closed) {
-							g.drawPolygon(poly);
-						} else {
-							g.drawPolyline(poly.xpoints, poly.ypoints, poly.npoints);
-						}
-					}
+					bestSkinRenderer.draw(g, ic, bestSkin[k], k);
 				}
 			}
 			if (updateFullWindow) {
@@ -162,19 +135,21 @@ public class snake2DSkinHandler extends PolygonRoi
 	} /* end deactivateDisplay */
 
 	/*------------------------------------------------------------------*/
+	/*********************************************************************
+	 * Keeps a snapshot of the skin. The snapshots share the apices of the scales
+	 * until the snake refills them, so that the cost does not depend on the number
+	 * of apices, and they are published at once to the thread that draws them.
+	 ********************************************************************/
 	protected void setBestSkin(final Snake2DScale[] bestSkin) {
 		if (bestSkin == null) {
 			this.bestSkin = null;
 			return;
 		}
-		this.bestSkin = new Snake2DScale[bestSkin.length];
+		final Snake2DScale[] snapshot = new Snake2DScale[bestSkin.length];
 		for (int k = 0, K = bestSkin.length; (k < K); k++) {
-			this.bestSkin[k] = new Snake2DScale(bestSkin[k].bestAttemptColor, bestSkin[k].currentAttemptColor,
-					bestSkin[k].closed, bestSkin[k].filled);
-			for (int n = 0, N = bestSkin[k].npoints; (n < N); n++) {
-				this.bestSkin[k].addPoint(bestSkin[k].xpoints[n], bestSkin[k].ypoints[n]);
-			}
+			snapshot[k] = bestSkin[k].snapshot();
 		}
+		this.bestSkin = snapshot;
 	} /* end setBestSkin */
 
 } /* end class snake2DSkinHandler */
@@ -0,0 +1,388 @@
+package com.virginieuhlmann.snake2D;
+
+import java.awt.geom.Point2D;
+
+/*====================================================================
+|	Snake2DDescentOptimizer
+\===================================================================*/
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This class provides the bookkeeping shared by the optimizers that
+ iteratively decrease the energy of a snake. The optimized parameters
+ are the coordinates of the nodes whose <code>frozen</code> flag is
+ set to <code>false</code>; frozen nodes are never modified. Every
+ measurement of the energy or of its gradient is preceded by a call to
+ <code>willProbe()</code>, and every configuration that improves on
+ the best energy observed so far is followed by a call to
+ <code>wasSuccessfulProbing()</code>. A configuration whose energy is
+ not finite is inadmissible; it is never recorded as the best one, and
+ an optimization that observed no finite energy reports no best energy
+ and is not deemed optimal. When <code>optimize()</code> returns, the
+ snake and <code>configuration</code> hold the best configuration that
+ was observed, and the observers are notified of it if that
+ notification was withheld by <code>setNotificationInterval()</code>.
+ @see Snake2DOptimizer
+ ********************************************************************/
+public abstract class Snake2DDescentOptimizer
+	extends
+		Snake2DOptimizer
+
+{ /* begin class Snake2DDescentOptimizer */
+
+/*....................................................................
+	public variables
+....................................................................*/
+/*********************************************************************
+ Default maximal number of iterations.
+ ********************************************************************/
+public static final int DEFAULT_MAX_ITERATIONS = 200;
+
+/*********************************************************************
+ Default relative decrease of the energy below which an iteration is
+ deemed to have converged.
+ ********************************************************************/
+public static final double DEFAULT_TOLERANCE = 1.0E-6;
+
+/*....................................................................
+	protected variables
+....................................................................*/
+/*********************************************************************
+ Maximal number of iterations.
+ ********************************************************************/
+protected int maxIterations = DEFAULT_MAX_ITERATIONS;
+
+/*********************************************************************
+ Relative decrease of the energy below which an iteration is deemed to
+ have converged.
+ ********************************************************************/
+protected double tolerance = DEFAULT_TOLERANCE;
+
+/*....................................................................
+	private variables
+....................................................................*/
+private Snake2D snake = null;
+private Snake2DNode[] configuration = null;
+private Snake2DNode[] bestConfiguration = null;
+private int[] freeNodes = null;
+private Double bestEnergy = null;
+private boolean optimalSnakeFound = false;
+private boolean snakeDied = false;
+private static final double ARMIJO = 1.0E-4;
+private static final int MAX_BACKTRACKS = 30;
+private double lastEnergy = 0.0;
+private volatile boolean stopped = false;
+
+/*....................................................................
+	constructor methods
+....................................................................*/
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This constructor uses the default maximal number of iterations and
+ the default tolerance.
+ ********************************************************************/
+protected Snake2DDescentOptimizer (
+) {
+} /* end Snake2DDescentOptimizer */
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ @param maxIterations The maximal number of iterations.
+ @param tolerance The relative decrease of the energy below which an
+ iteration is deemed to have converged.
+ ********************************************************************/
+protected Snake2DDescentOptimizer (
+	final int maxIterations,
+	final double tolerance
+) {
+	this.maxIterations = Math.max(1, maxIterations);
+	this.tolerance = Math.max(0.0, tolerance);
+} /* end Snake2DDescentOptimizer */
+
+/*....................................................................
+	Snake2DOptimizer methods
+....................................................................*/
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This method optimizes the non-frozen nodes of <code>configuration</code>
+ and leaves the best observed configuration in both the snake and
+ <code>configuration</code>.
+ @param snake The snake to optimize.
+ @param configuration The initial configuration of the snake.
+ ********************************************************************/
+@Override public void optimize (
+	final Snake2D snake,
+	final Snake2DNode[] configuration
+) {
+	this.snake = snake;
+	this.configuration = configuration;
+	bestEnergy = null;
+	optimalSnakeFound = false;
+	snakeDied = false;
+	stopped = false;
+	int K = 0;
+	for (int k = 0, N = configuration.length; (k < N); k++) {
+		if (!configuration[k].frozen) {
+			K++;
+		}
+	}
+	freeNodes = new int[K];
+	bestConfiguration = new Snake2DNode[configuration.length];
+	for (int k = 0, n = 0, N = configuration.length; (k < N); k++) {
+		if (!configuration[k].frozen) {
+			freeNodes[n++] = k;
+		}
+		bestConfiguration[k] = new Snake2DNode(configuration[k].x,
+			configuration[k].y, configuration[k].frozen,
+			configuration[k].hidden);
+	}
+	if (K == 0) {
+		probe(getParameters());
+		optimalSnakeFound = true;
+	}
+	else {
+		optimalSnakeFound = minimize(getParameters());
+	}
+	if (bestEnergy == null) {
+		optimalSnakeFound = false;
+	}
+	for (int k = 0, N = configuration.length; (k < N); k++) {
+		configuration[k].x = bestConfiguration[k].x;
+		configuration[k].y = bestConfiguration[k].y;
+	}
+	snake.setNodes(configuration);
+	flushNotifications();
+	this.snake = null;
+	this.configuration = null;
+} /* end optimize */
+
+/*------------------------------------------------------------------*/
+@Override public Double reportSnakeBestObservedEnergy (
+) {
+	return(bestEnergy);
+} /* end reportSnakeBestObservedEnergy */
+
+/*------------------------------------------------------------------*/
+@Override public boolean reportSnakeDeath (
+) {
+	return(snakeDied);
+} /* end reportSnakeDeath */
+
+/*------------------------------------------------------------------*/
+@Override public boolean reportSnakeOptimality (
+) {
+	return(optimalSnakeFound);
+} /* end reportSnakeOptimality */
+
+/*------------------------------------------------------------------*/
+@Override public void stopOptimizing (
+) {
+	stopped = true;
+} /* end stopOptimizing */
+
+/*....................................................................
+	protected methods
+....................................................................*/
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This method should minimize the energy of the snake starting from the
+ parameters <code>x</code>, by way of the methods <code>probe()</code>
+ and <code>gradient()</code>. It should return as soon as
+ <code>mustTerminate()</code> returns <code>true</code>.
+ @param x The initial parameters, two per non-frozen node.
+ @return Return <code>true</code> if the minimization converged.
+ ********************************************************************/
+abstract protected boolean minimize (
+	final double[] x
+);
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ Returns <code>true</code> once the optimization was stopped or the
+ snake died.
+ ********************************************************************/
+protected boolean mustTerminate (
+) {
+	return(stopped || snakeDied);
+} /* end mustTerminate */
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ Returns <code>true</code> if the decrease of the energy from
+ <code>previous</code> to <code>current</code> is small relative to
+ their magnitude.
+ ********************************************************************/
+protected boolean hasConverged (
+	final double previous,
+	final double current
+) {
+	return(2.0 * Math.abs(previous - current)
+		<= tolerance * (Math.abs(previous) + Math.abs(current)) + Double.MIN_NORMAL);
+} /* end hasConverged */
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ Sets the snake to the parameters <code>x</code> and measures its
+ energy.
+ @param x The parameters, two per non-frozen node.
+ @return The energy, <code>POSITIVE_INFINITY</code> if it is not
+ finite, or <code>NaN</code> if the snake died.
+ ********************************************************************/
+protected double probe (
+	final double[] x
+) {
+	setParameters(x);
+	snake.setNodes(configuration);
+	willProbe(snake);
+	if (!snake.isAlive()) {
+		snakeDied = true;
+		return(Double.NaN);
+	}
+	final double energy = snake.energy();
+	if (Double.isNaN(energy) || Double.isInfinite(energy)) {
+		return(Double.POSITIVE_INFINITY);
+	}
+	if ((bestEnergy == null) || (energy < bestEnergy.doubleValue())) {
+		bestEnergy = Double.valueOf(energy);
+		for (int k = 0, K = freeNodes.length; (k < K); k++) {
+			bestConfiguration[freeNodes[k]].x = configuration[freeNodes[k]].x;
+			bestConfiguration[freeNodes[k]].y = configuration[freeNodes[k]].y;
+		}
+		wasSuccessfulProbing(snake);
+	}
+	return(energy);
+} /* end probe */
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ Measures the gradient of the energy at the parameters <code>x</code>,
+ whose energy <code>energy</code> was measured by the last call to
+ <code>probe()</code>. If the snake does not provide its gradient, it
+ is estimated by forward finite differences of one hundredth of a
+ pixel.
+ @param x The parameters, two per non-frozen node.
+ @param energy The energy of the snake at <code>x</code>.
+ @return The gradient, or <code>null</code> if the snake died or the
+ optimization was stopped.
+ ********************************************************************/
+protected double[] gradient (
+	final double[] x,
+	final double energy
+) {
+	willProbe(snake);
+	if (!snake.isAlive()) {
+		snakeDied = true;
+		return(null);
+	}
+	final double[] g = new double[x.length];
+	final Point2D.Double[] nodeGradient = snake.getEnergyGradient();
+	if (nodeGradient != null) {
+		for (int k = 0, K = freeNodes.length; (k < K); k++) {
+			g[2 * k] = nodeGradient[freeNodes[k]].x;
+			g[2 * k + 1] = nodeGradient[freeNodes[k]].y;
+		}
+		return(g);
+	}
+	final double h = 0.01;
+	for (int n = 0, N = x.length; (n < N); n++) {
+		final double xn = x[n];
+		x[n] = xn + h;
+		final double e = probe(x);
+		x[n] = xn;
+		if (mustTerminate()) {
+			return(null);
+		}
+		g[n] = (e - energy) / h;
+	}
+	setParameters(x);
+	snake.setNodes(configuration);
+	return(g);
+} /* end gradient */
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ Searches along the direction <code>d</code> from <code>x</code> for a
+ step that satisfies the Armijo sufficient-decrease condition, by
+ halving the step <code>step</code> until it does. On success,
+ <code>x</code> is updated and the snake is left at the new
+ parameters. A step to a configuration whose energy is not finite is
+ never accepted.
+ @param x The current parameters, updated on success.
+ @param energy The energy at <code>x</code>.
+ @param g The gradient at <code>x</code>.
+ @param d The descent direction.
+ @param step The initial step.
+ @return The accepted step, or zero if no step decreased the energy.
+ The energy of the new parameters is stored in
+ <code>lastEnergy()</code>.
+ ********************************************************************/
+protected double lineSearch (
+	final double[] x,
+	final double energy,
+	final double[] g,
+	final double[] d,
+	double step
+) {
+	double slope = 0.0;
+	for (int n = 0, N = x.length; (n < N); n++) {
+		slope += g[n] * d[n];
+	}
+	if (0.0 <= slope) {
+		return(0.0);
+	}
+	final double[] y = new double[x.length];
+	for (int i = 0; (i < MAX_BACKTRACKS); i++) {
+		for (int n = 0, N = x.length; (n < N); n++) {
+			y[n] = x[n] + step * d[n];
+		}
+		final double e = probe(y);
+		if (mustTerminate()) {
+			return(0.0);
+		}
+		if (!Double.isInfinite(e) && (e <= energy + ARMIJO * step * slope)) {
+			System.arraycopy(y, 0, x, 0, x.length);
+			lastEnergy = e;
+			return(step);
+		}
+		step *= 0.5;
+	}
+	setParameters(x);
+	snake.setNodes(configuration);
+	return(0.0);
+} /* end lineSearch */
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ Returns the energy of the parameters accepted by the last successful
+ call to <code>lineSearch()</code>.
+ ********************************************************************/
+protected double lastEnergy (
+) {
+	return(lastEnergy);
+} /* end lastEnergy */
+
+/*....................................................................
+	private methods
+....................................................................*/
+/*------------------------------------------------------------------*/
+private double[] getParameters (
+) {
+	final double[] x = new double[2 * freeNodes.length];
+	for (int k = 0, K = freeNodes.length; (k < K); k++) {
+		x[2 * k] = configuration[freeNodes[k]].x;
+		x[2 * k + 1] = configuration[freeNodes[k]].y;
+	}
+	return(x);
+} /* end getParameters */
+
+/*------------------------------------------------------------------*/
+private void setParameters (
+	final double[] x
+) {
+	for (int k = 0, K = freeNodes.length; (k < K); k++) {
+		configuration[freeNodes[k]].x = x[2 * k];
+		configuration[freeNodes[k]].y = x[2 * k + 1];
+	}
+} /* end setParameters */
+
+} /* end class Snake2DDescentOptimizer */
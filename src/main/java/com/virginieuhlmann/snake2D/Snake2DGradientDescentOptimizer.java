@@ -0,0 +1,88 @@
+package com.virginieuhlmann.snake2D;
+/*====================================================================
+|	Snake2DGradientDescentOptimizer
+\===================================================================*/
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This class minimizes the energy of a snake by steepest descent. The
+ step along the negative gradient is found by a backtracking line
+ search; it starts from twice the previously accepted step, and from
+ one pixel for the largest component of the first gradient.
+ @see Snake2DDescentOptimizer
+ ********************************************************************/
+public class Snake2DGradientDescentOptimizer
+	extends
+		Snake2DDescentOptimizer
+
+{ /* begin class Snake2DGradientDescentOptimizer */
+
+/*....................................................................
+	constructor methods
+....................................................................*/
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This constructor uses the default maximal number of iterations and
+ the default tolerance.
+ ********************************************************************/
+public Snake2DGradientDescentOptimizer (
+) {
+} /* end Snake2DGradientDescentOptimizer */
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ @param maxIterations The maximal number of iterations.
+ @param tolerance The relative decrease of the energy below which an
+ iteration is deemed to have converged.
+ ********************************************************************/
+public Snake2DGradientDescentOptimizer (
+	final int maxIterations,
+	final double tolerance
+) {
+	super(maxIterations, tolerance);
+} /* end Snake2DGradientDescentOptimizer */
+
+/*....................................................................
+	Snake2DDescentOptimizer methods
+....................................................................*/
+/*------------------------------------------------------------------*/
+@Override protected boolean minimize (
+	final double[] x
+) {
+	double energy = probe(x);
+	if (mustTerminate()) {
+		return(false);
+	}
+	final double[] d = new double[x.length];
+	double step = 0.0;
+	for (int i = 0; (i < maxIterations); i++) {
+		final double[] g = gradient(x, energy);
+		if (g == null) {
+			return(false);
+		}
+		double norm = 0.0;
+		for (int n = 0, N = x.length; (n < N); n++) {
+			d[n] = -g[n];
+			norm = Math.max(norm, Math.abs(g[n]));
+		}
+		if (norm == 0.0) {
+			return(true);
+		}
+		step = (step == 0.0) ? (1.0 / norm) : (2.0 * step);
+		step = lineSearch(x, energy, g, d, step);
+		if (mustTerminate()) {
+			return(false);
+		}
+		if (step == 0.0) {
+			return(true);
+		}
+		final double previous = energy;
+		energy = lastEnergy();
+		if (hasConverged(previous, energy)) {
+			return(true);
+		}
+	}
+	return(false);
+} /* end minimize */
+
+} /* end class Snake2DGradientDescentOptimizer */
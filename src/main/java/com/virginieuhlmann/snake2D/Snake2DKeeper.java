@@ -32,8 +32,20 @@ package com.virginieuhlmann.snake2D;
 
 import static java.lang.Math.round;
 
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import ij.ImagePlus;
 import ij.gui.Toolbar;
@@ -49,12 +61,51 @@ import ij.gui.Toolbar;
  */
 public class Snake2DKeeper implements Observer {
 
+	/*
+	 * .................................................................... public
+	 * variables
+	 * ....................................................................
+	 */
+	/*********************************************************************
+	 * Largest relative change of size of the configurations perturbed by the
+	 * multi-start optimization.
+	 ********************************************************************/
+	public static final double MULTISTART_SCALE = 0.1;
+
+	/*********************************************************************
+	 * Largest rotation, in radians, of the configurations perturbed by the
+	 * multi-start optimization.
+	 ********************************************************************/
+	public static final double MULTISTART_ROTATION = Math.PI / 12.0;
+
+	/*********************************************************************
+	 * Standard deviation of the displacement of each node of the configurations
+	 * perturbed by the multi-start optimization, relative to the mean distance of
+	 * the nodes to their centroid.
+	 ********************************************************************/
+	public static final double MULTISTART_JITTER = 0.05;
+
 	/*
 	 * .................................................................... private
 	 * variables
 	 * ....................................................................
 	 */
+	private static final ExecutorService LANES = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "Snake2D multi-start");
+			thread.setDaemon(true);
+			return (thread);
+		}
+	});
+	private ExecutorService worker = null;
 	private ImagePlus display = null;
+	private Double bestEnergy = null;
+	private Snake2D snake = null;
+	private Snake2DNode[] bestNodes = null;
+	private Snake2DOptimizer optimizer = null;
+	private final AtomicBoolean repaintPending = new AtomicBoolean(false);
+	private final AtomicReference<Snake2DNode[]> latestNodes = new AtomicReference<Snake2DNode[]>();
 	private snake2DEditToolbar tb = null;
 	private snake2DSkinHandler sh = null;
 	private boolean canceledByUser = false;
@@ -92,29 +143,138 @@ public class Snake2DKeeper implements Observer {
 		if (snake == null) {
 			return;
 		}
+		interact(new Snake2D[] { snake }, display);
+	} /* end interact */
+
+	/*------------------------------------------------------------------*/
+	/*********************************************************************
+	 * This method lets the user interact with several snakes at once. The
+	 * handles of all the snakes are overlaid on the image and share one toolbar.
+	 * A node is picked among all the snakes; the snake it belongs to becomes the
+	 * one that is moved, resized, rotated, or stretched. Only the snakes whose
+	 * nodes were modified are updated through <code>Snake2D.setNodes()</code>.
+	 * The session ends for all the snakes at once, and each of them receives the
+	 * same report through <code>Snake2D.updateStatus()</code>.
+	 * 
+	 * @param snakes  The snakes to handle.
+	 * @param display A mandatory <code>ImagePlus</code> object over which the
+	 *                handles used to interactively manipulate the snakes will be
+	 *                overlaid.
+	 * @see #interact(Snake2D, ImagePlus)
+	 ********************************************************************/
+	public void interact(final Snake2D[] snakes, final ImagePlus display) {
+		if ((snakes == null) || (snakes.length == 0)) {
+			return;
+		}
+		for (int s = 0, S = snakes.length; (s < S); s++) {
+			if (snakes[s] == null) {
+				return;
+			}
+		}
 		this.display = display;
 		canceledByUser = false;
-		snakeDied = !snake.isAlive();
+		snakeDied = false;
+		for (int s = 0, S = snakes.length; (s < S); s++) {
+			snakeDied |= !snakes[s].isAlive();
+		}
 		optimalSnakeFound = false;
 		final Double energy = null;
 		if ((display == null) || snakeDied) {
-			snake.updateStatus(canceledByUser, snakeDied, optimalSnakeFound, energy);
+			for (int s = 0, S = snakes.length; (s < S); s++) {
+				snakes[s].updateStatus(canceledByUser, snakeDied, optimalSnakeFound, energy);
+			}
 			return;
 		}
 		display.killRoi();
 		optimizing = false;
 		singleShot = true;
 		sh = null;
+		final Snake2DNode[][] X = new Snake2DNode[snakes.length][];
+		for (int s = 0, S = snakes.length; (s < S); s++) {
+			final Snake2DNode[] youngSnake = snakes[s].getNodes();
+			final int K = youngSnake.length;
+			X[s] = new Snake2DNode[K];
+			for (int k = 0; (k < K); k++) {
+				X[s][k] = new Snake2DNode(youngSnake[k].x, youngSnake[k].y, youngSnake[k].frozen,
+						youngSnake[k].hidden);
+			}
+		}
+		tb = new snake2DEditToolbar(Toolbar.getInstance(), this);
+		final snake2DPointHandler ph = new snake2DPointHandler(display, snakes, X, tb, this);
+		final snake2DPointAction pa = new snake2DPointAction(display, ph, tb, this);
+		ph.setPointAction(pa);
+		ph.activateDisplay();
+		try {
+			synchronized (this) {
+				display.setRoi(ph);
+				wait();
+			}
+		} catch (InterruptedException e) {
+		}
+		tb.terminateInteraction(snakes, ph);
+		for (int s = 0, S = snakes.length; (s < S); s++) {
+			snakes[s].updateStatus(canceledByUser, snakeDied, optimalSnakeFound, energy);
+		}
+	} /* end interact */
+
+	/*------------------------------------------------------------------*/
+	/*********************************************************************
+	 * This method lets the user interact with the snake, and optimize it from
+	 * the current configuration of its nodes by pressing the start button. The
+	 * optimizer runs on a thread of its own. The AWT event thread never waits for
+	 * it: the skins are handed to the display as snapshots, the repaints are
+	 * coalesced, and the best configuration of the nodes is handed back to the
+	 * handles when the optimizer returns. Stopping the optimization takes effect
+	 * at the next probe of the snake.
+	 * 
+	 * @param snake     The snake to handle.
+	 * @param display   A mandatory <code>ImagePlus</code> object over which the
+	 *                  handles used to interactively manipulate the snake will be
+	 *                  overlaid.
+	 * @param optimizer The optimizer that drives the snake.
+	 * @see #interact(Snake2D, ImagePlus)
+	 * @see #optimize(Snake2D, Snake2DOptimizer)
+	 ********************************************************************/
+	public void interactAndOptimize(final Snake2D snake, final ImagePlus display,
+			final Snake2DOptimizer optimizer) {
+		if ((snake == null) || (optimizer == null)) {
+			return;
+		}
+		this.display = display;
+		canceledByUser = false;
+		snakeDied = !snake.isAlive();
+		optimalSnakeFound = false;
+		bestEnergy = null;
+		if ((display == null) || snakeDied) {
+			snake.updateStatus(canceledByUser, snakeDied, optimalSnakeFound, bestEnergy);
+			return;
+		}
+		display.killRoi();
+		optimizing = false;
+		singleShot = false;
+		this.snake = snake;
+		this.optimizer = optimizer;
+		sh = new snake2DSkinHandler(display, snake, this);
 		final Snake2DNode[] youngSnake = snake.getNodes();
 		final int K = youngSnake.length;
-		final Snake2DNode[] X = new Snake2DNode[K];
+		final Snake2DNode[][] X = new Snake2DNode[1][K];
 		for (int k = 0; (k < K); k++) {
-			X[k] = new Snake2DNode(youngSnake[k].x, youngSnake[k].y, youngSnake[k].frozen, youngSnake[k].hidden);
+			X[0][k] = new Snake2DNode(youngSnake[k].x, youngSnake[k].y, youngSnake[k].frozen, youngSnake[k].hidden);
 		}
 		tb = new snake2DEditToolbar(Toolbar.getInstance(), this);
-		final snake2DPointHandler ph = new snake2DPointHandler(display, snake, X, tb, this);
+		final snake2DPointHandler ph = new snake2DPointHandler(display, new Snake2D[] { snake }, X, tb, this);
 		final snake2DPointAction pa = new snake2DPointAction(display, ph, tb, this);
 		ph.setPointAction(pa);
+		worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "Snake2D optimizer");
+				thread.setDaemon(true);
+				return (thread);
+			}
+		});
+		optimizer.setNotificationInterval(Snake2DOptimizer.DISPLAY_FRAME_INTERVAL);
+		optimizer.addObserver(this);
 		ph.activateDisplay();
 		try {
 			synchronized (this) {
@@ -123,9 +283,172 @@ public class Snake2DKeeper implements Observer {
 			}
 		} catch (InterruptedException e) {
 		}
-		tb.terminateInteraction(snake, ph);
+		worker.shutdown();
+		optimizer.deleteObserver(this);
+		tb.terminateInteraction(new Snake2D[] { snake }, ph);
+		snake.updateStatus(canceledByUser, snakeDied, optimalSnakeFound, bestEnergy);
+		worker = null;
+		this.optimizer = null;
+		this.snake = null;
+		sh = null;
+	} /* end interactAndOptimize */
+
+	/*------------------------------------------------------------------*/
+	/*********************************************************************
+	 * This method optimizes the snake without any user interaction. It needs
+	 * neither a display nor an AWT toolkit, and can therefore run on a headless
+	 * system. It calls the method <code>Snake2D.getNodes()</code> one time to
+	 * retrieve the initial snake-defining nodes, lets the optimizer improve them,
+	 * and finally calls the method <code>Snake2D.setNodes()</code> with the best
+	 * configuration that was observed. Nodes whose <code>frozen</code> flag is set
+	 * are left to the optimizer to honor.
+	 * 
+	 * @param snake     The snake to optimize.
+	 * @param optimizer The optimizer that drives the snake.
+	 * @return The best energy observed during the optimization, or
+	 *         <code>null</code> if the energy could not be computed even once.
+	 * @see Snake2D#isAlive
+	 * @see Snake2D#getNodes
+	 * @see Snake2D#setNodes
+	 * @see Snake2D#updateStatus
+	 ********************************************************************/
+	public Double optimize(final Snake2D snake, final Snake2DOptimizer optimizer) {
+		if ((snake == null) || (optimizer == null)) {
+			return (null);
+		}
+		final Double energy = optimizeSilently(snake, optimizer);
 		snake.updateStatus(canceledByUser, snakeDied, optimalSnakeFound, energy);
-	} /* end interact */
+		return (energy);
+	} /* end optimize */
+
+	/*------------------------------------------------------------------*/
+	/*********************************************************************
+	 * This method optimizes the snake from several starts without any user
+	 * interaction, and keeps the configuration that reaches the lowest energy.
+	 * The first start is the initial configuration of the snake; the others are
+	 * copies of it that are scaled and rotated about the centroid of the nodes,
+	 * and whose nodes are jittered, by random amounts bounded by
+	 * <code>MULTISTART_SCALE</code>, <code>MULTISTART_ROTATION</code>, and
+	 * <code>MULTISTART_JITTER</code>. Frozen nodes are left in place. If the
+	 * snake implements <code>Snake2DTangents</code>, the centroid is that of its
+	 * points, and its tangents are rotated and scaled as vectors, without being
+	 * translated or jittered. The starts are distributed over the
+	 * snakes, and each start is optimized as by
+	 * <code>optimize(Snake2D, Snake2DOptimizer)</code>. The first snake runs its
+	 * starts on the calling thread, and the other snakes on threads of a pool
+	 * shared by all the keepers, so that a single snake uses no other thread. The best configuration is
+	 * finally set on the first snake, which alone receives a report through
+	 * <code>Snake2D.updateStatus()</code>.
+	 * 
+	 * @param snakes     The snake to optimize, followed by independent copies of
+	 *                   it. Each of them is used by one thread.
+	 * @param optimizers One optimizer per snake.
+	 * @param starts     The number of starts.
+	 * @param seed       The seed of the random perturbations.
+	 * @return The lowest energy reached by any start, or <code>null</code> if the
+	 *         energy could not be computed even once.
+	 * @see #optimize(Snake2D, Snake2DOptimizer)
+	 * @see Snake2DTangents
+	 ********************************************************************/
+	public Double optimize(final Snake2D[] snakes, final Snake2DOptimizer[] optimizers, final int starts,
+			final long seed) {
+		if ((snakes == null) || (optimizers == null) || (snakes.length == 0)
+				|| (snakes.length != optimizers.length)) {
+			return (null);
+		}
+		for (int l = 0, L = snakes.length; (l < L); l++) {
+			if ((snakes[l] == null) || (optimizers[l] == null)) {
+				return (null);
+			}
+		}
+		final Snake2D snake = snakes[0];
+		display = null;
+		canceledByUser = false;
+		snakeDied = !snake.isAlive();
+		optimalSnakeFound = false;
+		if (snakeDied || (starts < 1)) {
+			snake.updateStatus(canceledByUser, snakeDied, optimalSnakeFound, null);
+			return (null);
+		}
+		final Snake2DNode[] youngSnake = snake.getNodes();
+		final int K = youngSnake.length;
+		final Snake2DNode[] X = new Snake2DNode[K];
+		for (int k = 0; (k < K); k++) {
+			X[k] = new Snake2DNode(youngSnake[k].x, youngSnake[k].y, youngSnake[k].frozen, youngSnake[k].hidden);
+		}
+		final boolean[] tangent = new boolean[K];
+		if (snake instanceof Snake2DTangents) {
+			for (int k = 0; (k < K); k++) {
+				tangent[k] = ((Snake2DTangents) snake).isTangent(k);
+			}
+		}
+		final Double[] energies = new Double[starts];
+		final boolean[] optimal = new boolean[starts];
+		final Snake2DNode[][] configurations = new Snake2DNode[starts][];
+		final AtomicInteger nextStart = new AtomicInteger(0);
+		final Runnable[] lanes = new Runnable[snakes.length];
+		for (int l = 0, L = snakes.length; (l < L); l++) {
+			final Snake2D lane = snakes[l];
+			final Snake2DOptimizer optimizer = optimizers[l];
+			lanes[l] = new Runnable() {
+				@Override
+				public void run() {
+					for (int start = nextStart.getAndIncrement(); (start < starts); start = nextStart
+							.getAndIncrement()) {
+						lane.setNodes(perturb(X, tangent, start, seed));
+						final Snake2DKeeper keeper = new Snake2DKeeper();
+						energies[start] = keeper.optimizeSilently(lane, optimizer);
+						optimal[start] = keeper.optimalSnakeFound;
+						final Snake2DNode[] nodes = lane.getNodes();
+						configurations[start] = new Snake2DNode[nodes.length];
+						for (int k = 0, N = nodes.length; (k < N); k++) {
+							configurations[start][k] = new Snake2DNode(nodes[k].x, nodes[k].y, nodes[k].frozen,
+									nodes[k].hidden);
+						}
+					}
+				}
+			};
+		}
+		Snake2DNode[] bestConfiguration = null;
+		Double bestEnergy = null;
+		final List<Future<?>> helpers = new ArrayList<Future<?>>(snakes.length - 1);
+		try {
+			for (int l = 1, L = snakes.length; (l < L); l++) {
+				helpers.add(LANES.submit(lanes[l]));
+			}
+			lanes[0].run();
+			for (Future<?> helper : helpers) {
+				helper.get();
+			}
+			for (int s = 0; (s < starts); s++) {
+				if ((energies[s] != null)
+						&& ((bestEnergy == null) || (energies[s].doubleValue() < bestEnergy.doubleValue()))) {
+					bestEnergy = energies[s];
+					bestConfiguration = configurations[s];
+					optimalSnakeFound = optimal[s];
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw ((RuntimeException) cause);
+			}
+			if (cause instanceof Error) {
+				throw ((Error) cause);
+			}
+			throw (new IllegalStateException(cause));
+		} finally {
+			for (Future<?> helper : helpers) {
+				helper.cancel(true);
+			}
+		}
+		snake.setNodes((bestConfiguration == null) ? (X) : (bestConfiguration));
+		snakeDied = !snake.isAlive();
+		snake.updateStatus(canceledByUser, snakeDied, optimalSnakeFound, bestEnergy);
+		return (bestEnergy);
+	} /* end optimize */
 
 	/*
 	 * ....................................................................
@@ -163,7 +486,47 @@ public class Snake2DKeeper implements Observer {
 	} /* end startOptimizing */
 
 	/*------------------------------------------------------------------*/
+	/*********************************************************************
+	 * Hands the configuration of the nodes of the handler to the optimizer,
+	 * which runs on its own thread. This method is meant to be called from the
+	 * AWT event thread, and returns at once.
+	 ********************************************************************/
+	protected void startOptimizing(final snake2DPointHandler ph) {
+		synchronized (this) {
+			if (optimizing || (worker == null)) {
+				return;
+			}
+			optimizing = true;
+		}
+		final Snake2DNode[] nodes = ph.getPoints(0);
+		final Snake2DNode[] X = new Snake2DNode[nodes.length];
+		for (int k = 0, K = nodes.length; (k < K); k++) {
+			X[k] = new Snake2DNode(nodes[k].x, nodes[k].y, nodes[k].frozen, nodes[k].hidden);
+		}
+		snake.setNodes(X);
+		sh.setSkin(snake.getScales());
+		sh.setBestSkin(null);
+		latestNodes.set(null);
+		display.setRoi(sh);
+		worker.execute(new Runnable() {
+			@Override
+			public void run() {
+				runOptimization(X, ph);
+			}
+		});
+	} /* end startOptimizing */
+
+	/*------------------------------------------------------------------*/
+	/*********************************************************************
+	 * Stops the optimization. When the optimizer runs on its own thread, it is
+	 * asked to return at its next probe, and the handles get the display back
+	 * when it does.
+	 ********************************************************************/
 	protected synchronized void stopOptimizing(final snake2DPointHandler ph) {
+		if (worker != null) {
+			optimizer.stopOptimizing();
+			return;
+		}
 		optimizing = false;
 		tb.setTool(snake2DPointAction.MOVE_CROSS);
 		if (display != null) {
@@ -178,15 +541,184 @@ public class Snake2DKeeper implements Observer {
 	/*------------------------------------------------------------------*/
 	@Override
 	public void update(final Observable observable, final Object object) {
-		if (display != null) {
+		if (bestNodes != null) {
+			if (((Snake2DOptimizer) observable).isCurrentBest) {
+				final Snake2DNode[] nodes = ((Snake2D) object).getNodes();
+				for (int k = 0, K = bestNodes.length; (k < K); k++) {
+					bestNodes[k].x = nodes[k].x;
+					bestNodes[k].y = nodes[k].y;
+				}
+			}
+		} else if (display != null) {
+			final Snake2D snake = (Snake2D) object;
 			if (((Snake2DOptimizer) observable).isCurrentBest) {
-				display.setRoi(sh);
+				final Snake2DNode[] nodes = snake.getNodes();
+				final Snake2DNode[] latest = new Snake2DNode[nodes.length];
+				for (int k = 0, K = nodes.length; (k < K); k++) {
+					latest[k] = new Snake2DNode(nodes[k].x, nodes[k].y, nodes[k].frozen, nodes[k].hidden);
+				}
+				latestNodes.set(latest);
+				sh.setBestSkin(snake.getScales());
 			} else {
-				sh.setBestSkin(((Snake2D) object).getScales());
+				sh.setSkin(snake.getScales());
 			}
+			requestRepaint();
 		}
 	} /* end update */
 
+	/*
+	 * ....................................................................
+	 * private methods
+	 * ....................................................................
+	 */
+	/*------------------------------------------------------------------*/
+	private void finishOptimizing(final snake2DPointHandler ph) {
+		final Snake2DNode[] nodes = latestNodes.getAndSet(null);
+		if (nodes != null) {
+			ph.setPoints(0, nodes);
+		}
+		synchronized (this) {
+			optimizing = false;
+		}
+		tb.setTool(snake2DPointAction.MOVE_CROSS);
+		display.setRoi(ph);
+	} /* end finishOptimizing */
+
+	/*------------------------------------------------------------------*/
+	/**
+	 * Optimizes the snake as <code>optimize(Snake2D, Snake2DOptimizer)</code>
+	 * does, but leaves the report through <code>Snake2D.updateStatus()</code> to
+	 * the caller.
+	 */
+	private Double optimizeSilently(final Snake2D snake, final Snake2DOptimizer optimizer) {
+		display = null;
+		canceledByUser = false;
+		snakeDied = !snake.isAlive();
+		optimalSnakeFound = false;
+		if (snakeDied) {
+			return (null);
+		}
+		final Snake2DNode[] youngSnake = snake.getNodes();
+		final int K = youngSnake.length;
+		final Snake2DNode[] X = new Snake2DNode[K];
+		bestNodes = new Snake2DNode[K];
+		for (int k = 0; (k < K); k++) {
+			X[k] = new Snake2DNode(youngSnake[k].x, youngSnake[k].y, youngSnake[k].frozen, youngSnake[k].hidden);
+			bestNodes[k] = new Snake2DNode(youngSnake[k].x, youngSnake[k].y, youngSnake[k].frozen,
+					youngSnake[k].hidden);
+		}
+		startOptimizing();
+		optimizer.addObserver(this);
+		try {
+			optimizer.optimize(snake, X);
+		} finally {
+			optimizer.deleteObserver(this);
+			synchronized (this) {
+				optimizing = false;
+			}
+		}
+		final Double energy = optimizer.reportSnakeBestObservedEnergy();
+		snakeDied = optimizer.reportSnakeDeath();
+		optimalSnakeFound = optimizer.reportSnakeOptimality();
+		if (energy != null) {
+			snake.setNodes(bestNodes);
+		}
+		bestNodes = null;
+		return (energy);
+	} /* end optimizeSilently */
+
+	/*------------------------------------------------------------------*/
+	private static Snake2DNode[] perturb(final Snake2DNode[] nodes, final boolean[] tangent, final int start,
+			final long seed) {
+		final int K = nodes.length;
+		final Snake2DNode[] perturbed = new Snake2DNode[K];
+		int P = 0;
+		for (int k = 0; (k < K); k++) {
+			perturbed[k] = new Snake2DNode(nodes[k].x, nodes[k].y, nodes[k].frozen, nodes[k].hidden);
+			if (!tangent[k]) {
+				P++;
+			}
+		}
+		if ((start == 0) || (P == 0)) {
+			return (perturbed);
+		}
+		double xc = 0.0;
+		double yc = 0.0;
+		for (int k = 0; (k < K); k++) {
+			if (!tangent[k]) {
+				xc += nodes[k].x;
+				yc += nodes[k].y;
+			}
+		}
+		xc /= P;
+		yc /= P;
+		double radius = 0.0;
+		for (int k = 0; (k < K); k++) {
+			if (!tangent[k]) {
+				radius += Math.hypot(nodes[k].x - xc, nodes[k].y - yc);
+			}
+		}
+		radius /= P;
+		final Random random = new Random(seed + start);
+		final double scale = 1.0 + MULTISTART_SCALE * (2.0 * random.nextDouble() - 1.0);
+		final double angle = MULTISTART_ROTATION * (2.0 * random.nextDouble() - 1.0);
+		final double cos = scale * Math.cos(angle);
+		final double sin = scale * Math.sin(angle);
+		final double jitter = MULTISTART_JITTER * radius;
+		for (int k = 0; (k < K); k++) {
+			if (nodes[k].frozen) {
+				continue;
+			}
+			if (tangent[k]) {
+				perturbed[k].x = cos * nodes[k].x - sin * nodes[k].y;
+				perturbed[k].y = sin * nodes[k].x + cos * nodes[k].y;
+			} else {
+				final double dx = nodes[k].x - xc;
+				final double dy = nodes[k].y - yc;
+				perturbed[k].x = xc + cos * dx - sin * dy + jitter * random.nextGaussian();
+				perturbed[k].y = yc + sin * dx + cos * dy + jitter * random.nextGaussian();
+			}
+		}
+		return (perturbed);
+	} /* end perturb */
+
+	/*------------------------------------------------------------------*/
+	private void requestRepaint() {
+		if (repaintPending.compareAndSet(false, true)) {
+			EventQueue.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					repaintPending.set(false);
+					if (isOptimizing()) {
+						display.setRoi(sh);
+					}
+				}
+			});
+		}
+	} /* end requestRepaint */
+
+	/*------------------------------------------------------------------*/
+	private void runOptimization(final Snake2DNode[] X, final snake2DPointHandler ph) {
+		try {
+			optimizer.optimize(snake, X);
+			final Double energy = optimizer.reportSnakeBestObservedEnergy();
+			synchronized (this) {
+				if (energy != null) {
+					bestEnergy = energy;
+				}
+				snakeDied = optimizer.reportSnakeDeath();
+				optimalSnakeFound = optimizer.reportSnakeOptimality();
+			}
+		} finally {
+			EventQueue.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					finishOptimizing(ph);
+				}
+			});
+		}
+	} /* end runOptimization */
+
 } /* end class Snake2DKeeper */
 
 /*
@@ -0,0 +1,192 @@
+package com.virginieuhlmann.snake2D;
+/*====================================================================
+|	Snake2DLBFGSOptimizer
+\===================================================================*/
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This class minimizes the energy of a snake by the limited-memory
+ Broyden-Fletcher-Goldfarb-Shanno quasi-Newton method. The inverse
+ Hessian is approximated from the last few pairs of parameter and
+ gradient differences, and the step along the resulting direction is
+ found by a backtracking line search that first tries the full
+ quasi-Newton step. The memory is cleared whenever the direction fails
+ to decrease the energy.
+ @see Snake2DDescentOptimizer
+ ********************************************************************/
+public class Snake2DLBFGSOptimizer
+	extends
+		Snake2DDescentOptimizer
+
+{ /* begin class Snake2DLBFGSOptimizer */
+
+/*....................................................................
+	public variables
+....................................................................*/
+/*********************************************************************
+ Default number of parameter and gradient differences kept in memory.
+ ********************************************************************/
+public static final int DEFAULT_MEMORY = 5;
+
+/*....................................................................
+	private variables
+....................................................................*/
+private int memory = DEFAULT_MEMORY;
+
+/*....................................................................
+	constructor methods
+....................................................................*/
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This constructor uses the default maximal number of iterations, the
+ default tolerance, and the default memory.
+ ********************************************************************/
+public Snake2DLBFGSOptimizer (
+) {
+} /* end Snake2DLBFGSOptimizer */
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ @param maxIterations The maximal number of iterations.
+ @param tolerance The relative decrease of the energy below which an
+ iteration is deemed to have converged.
+ @param memory The number of parameter and gradient differences kept
+ in memory.
+ ********************************************************************/
+public Snake2DLBFGSOptimizer (
+	final int maxIterations,
+	final double tolerance,
+	final int memory
+) {
+	super(maxIterations, tolerance);
+	this.memory = Math.max(1, memory);
+} /* end Snake2DLBFGSOptimizer */
+
+/*....................................................................
+	Snake2DDescentOptimizer methods
+....................................................................*/
+/*------------------------------------------------------------------*/
+@Override protected boolean minimize (
+	final double[] x
+) {
+	final int N = x.length;
+	final double[][] s = new double[memory][N];
+	final double[][] y = new double[memory][N];
+	final double[] rho = new double[memory];
+	final double[] alpha = new double[memory];
+	final double[] d = new double[N];
+	final double[] previousX = new double[N];
+	double[] sNew = new double[N];
+	double[] yNew = new double[N];
+	int stored = 0;
+	int newest = -1;
+	double energy = probe(x);
+	if (mustTerminate()) {
+		return(false);
+	}
+	double[] g = gradient(x, energy);
+	if (g == null) {
+		return(false);
+	}
+	for (int i = 0; (i < maxIterations); i++) {
+		double norm = 0.0;
+		for (int n = 0; (n < N); n++) {
+			norm = Math.max(norm, Math.abs(g[n]));
+		}
+		if (norm == 0.0) {
+			return(true);
+		}
+		// Two-loop recursion
+		for (int n = 0; (n < N); n++) {
+			d[n] = -g[n];
+		}
+		for (int m = 0, k = newest; (m < stored); m++, k = (k + memory - 1) % memory) {
+			alpha[k] = rho[k] * dot(s[k], d);
+			for (int n = 0; (n < N); n++) {
+				d[n] -= alpha[k] * y[k][n];
+			}
+		}
+		double step = 1.0;
+		if (stored == 0) {
+			step = 1.0 / norm;
+		}
+		else {
+			final double gamma = dot(s[newest], y[newest]) / dot(y[newest], y[newest]);
+			for (int n = 0; (n < N); n++) {
+				d[n] *= gamma;
+			}
+		}
+		for (int m = 0, k = (newest + memory - stored + 1) % memory; (m < stored);
+			m++, k = (k + 1) % memory) {
+			final double beta = rho[k] * dot(y[k], d);
+			for (int n = 0; (n < N); n++) {
+				d[n] += (alpha[k] - beta) * s[k][n];
+			}
+		}
+		if (0.0 <= dot(g, d)) {
+			stored = 0;
+			for (int n = 0; (n < N); n++) {
+				d[n] = -g[n];
+			}
+			step = 1.0 / norm;
+		}
+		System.arraycopy(x, 0, previousX, 0, N);
+		step = lineSearch(x, energy, g, d, step);
+		if (mustTerminate()) {
+			return(false);
+		}
+		if (step == 0.0) {
+			if (stored == 0) {
+				return(true);
+			}
+			stored = 0;
+			continue;
+		}
+		final double previous = energy;
+		energy = lastEnergy();
+		final double[] previousG = g;
+		g = gradient(x, energy);
+		if (g == null) {
+			return(false);
+		}
+		if (hasConverged(previous, energy)) {
+			return(true);
+		}
+		for (int n = 0; (n < N); n++) {
+			sNew[n] = x[n] - previousX[n];
+			yNew[n] = g[n] - previousG[n];
+		}
+		final double sy = dot(sNew, yNew);
+		if (0.0 < sy) {
+			// The pair replaces the oldest one only when the curvature is positive
+			final int k = (newest + 1) % memory;
+			final double[] sOld = s[k];
+			final double[] yOld = y[k];
+			s[k] = sNew;
+			y[k] = yNew;
+			sNew = sOld;
+			yNew = yOld;
+			rho[k] = 1.0 / sy;
+			newest = k;
+			stored = Math.min(stored + 1, memory);
+		}
+	}
+	return(false);
+} /* end minimize */
+
+/*....................................................................
+	private methods
+....................................................................*/
+/*------------------------------------------------------------------*/
+private static double dot (
+	final double[] u,
+	final double[] v
+) {
+	double sum = 0.0;
+	for (int n = 0, N = u.length; (n < N); n++) {
+		sum += u[n] * v[n];
+	}
+	return(sum);
+} /* end dot */
+
+} /* end class Snake2DLBFGSOptimizer */
@@ -61,6 +61,21 @@ public abstract class Snake2DOptimizer
  ********************************************************************/
 public boolean isCurrentBest = false;
 
+/*********************************************************************
+ Notification interval, in milliseconds, of one display frame at 60
+ frames per second. It is meant to be passed to
+ <code>setNotificationInterval()</code> when the observers repaint
+ the snake.
+ ********************************************************************/
+public static final long DISPLAY_FRAME_INTERVAL = 16L;
+
+/*....................................................................
+	private variables
+....................................................................*/
+private long notificationInterval = 0L;
+private long lastNotification = 0L;
+private Snake2D pendingBest = null;
+
 /*....................................................................
 	abstract methods
 ....................................................................*/
@@ -152,6 +167,41 @@ abstract public boolean reportSnakeOptimality (
 abstract public void stopOptimizing (
 );
 
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ Notifies the keeper of the improvement that was withheld by the last
+ calls to <code>wasSuccessfulProbing()</code>, if any. This method
+ should be called when the snake is back in its best configuration,
+ typically at the end of <code>optimize()</code>.
+ ********************************************************************/
+public void flushNotifications (
+) {
+	if (pendingBest != null) {
+		final Snake2D snake = pendingBest;
+		pendingBest = null;
+		lastNotification = System.nanoTime();
+		isCurrentBest = true;
+		setChanged();
+		notifyObservers(snake);
+	}
+} /* end flushNotifications */
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ Limits the rate at which the observers are notified. Within
+ <code>interval</code> milliseconds of a notification, the calls to
+ <code>willProbe()</code> are dropped and the calls to
+ <code>wasSuccessfulProbing()</code> are coalesced; the last withheld
+ improvement is delivered by <code>flushNotifications()</code>.
+ @param interval The minimal interval between two notifications, in
+ milliseconds. Set to zero to notify every probe.
+ ********************************************************************/
+public void setNotificationInterval (
+	final long interval
+) {
+	notificationInterval = Math.max(0L, interval) * 1000000L;
+} /* end setNotificationInterval */
+
 /*------------------------------------------------------------------*/
 /*********************************************************************
  Notifies the keeper that the optimizer was successful in its previous
@@ -163,6 +213,11 @@ abstract public void stopOptimizing (
 public void wasSuccessfulProbing (
 	final Snake2D snake
 ) {
+	if (isThrottled()) {
+		pendingBest = snake;
+		return;
+	}
+	pendingBest = null;
 	isCurrentBest = true;
 	setChanged();
 	notifyObservers(snake);
@@ -177,9 +232,29 @@ public void wasSuccessfulProbing (
 public void willProbe (
 	final Snake2D snake
 ) {
+	if (isThrottled()) {
+		return;
+	}
 	isCurrentBest = false;
 	setChanged();
 	notifyObservers(snake);
 } /* end willProbe */
 
+/*....................................................................
+	private methods
+....................................................................*/
+/*------------------------------------------------------------------*/
+private boolean isThrottled (
+) {
+	if (notificationInterval == 0L) {
+		return(false);
+	}
+	final long now = System.nanoTime();
+	if (now - lastNotification < notificationInterval) {
+		return(true);
+	}
+	lastNotification = now;
+	return(false);
+} /* end isThrottled */
+
 } /* end class snake2DOptimizer */
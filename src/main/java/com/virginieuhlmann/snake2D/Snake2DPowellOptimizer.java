@@ -0,0 +1,236 @@
+package com.virginieuhlmann.snake2D;
+/*====================================================================
+|	Snake2DPowellOptimizer
+\===================================================================*/
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This class minimizes the energy of a snake by Powell's method of
+ conjugate directions. It never calls
+ <code>Snake2D.getEnergyGradient()</code>, which makes it suitable for
+ energies that are not differentiable or whose gradient is unreliable.
+ Each iteration minimizes the energy along every direction of a set,
+ initially the axes of the parameters, then along the overall
+ displacement of the iteration, which replaces the direction that
+ contributed the largest decrease.
+ @see Snake2DDescentOptimizer
+ ********************************************************************/
+public class Snake2DPowellOptimizer
+	extends
+		Snake2DDescentOptimizer
+
+{ /* begin class Snake2DPowellOptimizer */
+
+/*....................................................................
+	private variables
+....................................................................*/
+private static final double GOLDEN = 0.5 * (3.0 - Math.sqrt(5.0));
+private static final double INITIAL_STEP = 1.0;
+private static final double LINE_TOLERANCE = 0.01;
+private static final int MAX_EXPANSIONS = 20;
+
+/*....................................................................
+	constructor methods
+....................................................................*/
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This constructor uses the default maximal number of iterations and
+ the default tolerance.
+ ********************************************************************/
+public Snake2DPowellOptimizer (
+) {
+} /* end Snake2DPowellOptimizer */
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ @param maxIterations The maximal number of iterations.
+ @param tolerance The relative decrease of the energy below which an
+ iteration is deemed to have converged.
+ ********************************************************************/
+public Snake2DPowellOptimizer (
+	final int maxIterations,
+	final double tolerance
+) {
+	super(maxIterations, tolerance);
+} /* end Snake2DPowellOptimizer */
+
+/*....................................................................
+	Snake2DDescentOptimizer methods
+....................................................................*/
+/*------------------------------------------------------------------*/
+@Override protected boolean minimize (
+	final double[] x
+) {
+	final int N = x.length;
+	final double[][] u = new double[N][N];
+	for (int n = 0; (n < N); n++) {
+		u[n][n] = 1.0;
+	}
+	final double[] start = new double[N];
+	double energy = probe(x);
+	if (mustTerminate()) {
+		return(false);
+	}
+	for (int i = 0; (i < maxIterations); i++) {
+		System.arraycopy(x, 0, start, 0, N);
+		final double previous = energy;
+		double largestDecrease = 0.0;
+		int largest = 0;
+		for (int n = 0; (n < N); n++) {
+			final double e = lineMinimize(x, energy, u[n]);
+			if (mustTerminate()) {
+				return(false);
+			}
+			if (largestDecrease < energy - e) {
+				largestDecrease = energy - e;
+				largest = n;
+			}
+			energy = e;
+		}
+		if (hasConverged(previous, energy)) {
+			return(true);
+		}
+		double norm = 0.0;
+		final double[] v = new double[N];
+		for (int n = 0; (n < N); n++) {
+			v[n] = x[n] - start[n];
+			norm += v[n] * v[n];
+		}
+		if (0.0 < norm) {
+			norm = Math.sqrt(norm);
+			for (int n = 0; (n < N); n++) {
+				v[n] /= norm;
+			}
+			energy = lineMinimize(x, energy, v);
+			if (mustTerminate()) {
+				return(false);
+			}
+			u[largest] = v;
+		}
+	}
+	return(false);
+} /* end minimize */
+
+/*....................................................................
+	private methods
+....................................................................*/
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ Minimizes the energy along the direction <code>u</code> from
+ <code>x</code> by bracketing a minimum, then narrowing the bracket by
+ golden-section search. The bracket is expanded on whichever side of
+ <code>x</code> the energy decreases. The parameters <code>x</code> are moved to the
+ best point found.
+ @return The energy at the updated parameters.
+ ********************************************************************/
+private double lineMinimize (
+	final double[] x,
+	final double energy,
+	final double[] u
+) {
+	final double[] y = new double[x.length];
+	double bestT = 0.0;
+	double bestEnergy = energy;
+	double sign = 1.0;
+	double lo = 0.0;
+	double hi = INITIAL_STEP;
+	double e = probeAlong(x, u, hi, y);
+	if (mustTerminate()) {
+		return(energy);
+	}
+	if (bestEnergy <= e) {
+		e = probeAlong(x, u, -INITIAL_STEP, y);
+		if (mustTerminate()) {
+			return(energy);
+		}
+		if (e < bestEnergy) {
+			sign = -1.0;
+		}
+		else {
+			lo = -INITIAL_STEP;
+		}
+	}
+	if (e < bestEnergy) {
+		// Expand the bracket in the descent direction until the energy
+		// increases again; lo and hi are measured along sign * u
+		bestT = sign * hi;
+		bestEnergy = e;
+		double mid = hi;
+		for (int i = 0; (i < MAX_EXPANSIONS); i++) {
+			hi = mid + (mid - lo) / GOLDEN * (1.0 - GOLDEN);
+			e = probeAlong(x, u, sign * hi, y);
+			if (mustTerminate()) {
+				return(energy);
+			}
+			if (bestEnergy <= e) {
+				break;
+			}
+			lo = mid;
+			mid = hi;
+			bestT = sign * hi;
+			bestEnergy = e;
+		}
+		if (sign < 0.0) {
+			final double t = lo;
+			lo = -hi;
+			hi = -t;
+		}
+	}
+	// Golden-section search over [lo, hi]
+	double a = hi - (1.0 - GOLDEN) * (hi - lo);
+	double b = lo + (1.0 - GOLDEN) * (hi - lo);
+	double ea = probeAlong(x, u, a, y);
+	if (mustTerminate()) {
+		return(energy);
+	}
+	double eb = probeAlong(x, u, b, y);
+	if (mustTerminate()) {
+		return(energy);
+	}
+	while (LINE_TOLERANCE < Math.abs(hi - lo)) {
+		if (ea < eb) {
+			hi = b;
+			b = a;
+			eb = ea;
+			a = hi - (1.0 - GOLDEN) * (hi - lo);
+			ea = probeAlong(x, u, a, y);
+		}
+		else {
+			lo = a;
+			a = b;
+			ea = eb;
+			b = lo + (1.0 - GOLDEN) * (hi - lo);
+			eb = probeAlong(x, u, b, y);
+		}
+		if (mustTerminate()) {
+			return(energy);
+		}
+	}
+	if (ea < bestEnergy) {
+		bestT = a;
+		bestEnergy = ea;
+	}
+	if (eb < bestEnergy) {
+		bestT = b;
+		bestEnergy = eb;
+	}
+	for (int n = 0, N = x.length; (n < N); n++) {
+		x[n] += bestT * u[n];
+	}
+	return(bestEnergy);
+} /* end lineMinimize */
+
+/*------------------------------------------------------------------*/
+private double probeAlong (
+	final double[] x,
+	final double[] u,
+	final double t,
+	final double[] y
+) {
+	for (int n = 0, N = x.length; (n < N); n++) {
+		y[n] = x[n] + t * u[n];
+	}
+	return(probe(y));
+} /* end probeAlong */
+
+} /* end class Snake2DPowellOptimizer */
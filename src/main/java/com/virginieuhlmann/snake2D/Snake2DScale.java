@@ -32,6 +32,7 @@ package com.virginieuhlmann.snake2D;
 
 import java.awt.Color;
 import java.awt.Polygon;
+import java.util.Arrays;
 
 /*====================================================================
 |	Snake2DScale
@@ -96,6 +97,8 @@ public boolean filled = false;
 /*....................................................................
 	private variables
 ....................................................................*/
+private boolean shared = false;
+private long version = 0L;
 private static final long serialVersionUID = 1L;
 
 /*....................................................................
@@ -153,6 +156,164 @@ public Snake2DScale (
 	this.filled = filled;
 } /* end Snake2DScale */
 
+/*....................................................................
+	public methods
+....................................................................*/
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This method makes sure that the arrays <code>xpoints</code> and
+ <code>ypoints</code> can hold at least <code>capacity</code> apices,
+ so that they can be refilled in place without being reallocated. The
+ apices already stored are preserved.
+ @param capacity The number of apices to accommodate.
+ ********************************************************************/
+public void ensureCapacity (
+	final int capacity
+) {
+	if (shared || (xpoints.length < capacity)) {
+		xpoints = Arrays.copyOf(xpoints, Math.max(xpoints.length, capacity));
+		ypoints = Arrays.copyOf(ypoints, Math.max(ypoints.length, capacity));
+		shared = false;
+	}
+} /* end ensureCapacity */
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This method returns the version of the content of this scale. Scales
+ that are refilled in place by their snake get a new version every
+ time their apices change, so that a caller may skip any work when the
+ version it saw last is unchanged.
+ ********************************************************************/
+public long getVersion (
+) {
+	return(version);
+} /* end getVersion */
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This method must be called before the arrays <code>xpoints</code> and
+ <code>ypoints</code> are refilled in place with at most
+ <code>capacity</code> apices. If the arrays are shared with a
+ snapshot, fresh arrays are allocated so that the snapshot is left
+ unchanged; the apices already stored are not preserved in that case.
+ @param capacity The number of apices to accommodate.
+ @see #snapshot
+ ********************************************************************/
+public void prepareContent (
+	final int capacity
+) {
+	if (shared || (xpoints.length < capacity)) {
+		final int length = Math.max(xpoints.length, capacity);
+		xpoints = new int[length];
+		ypoints = new int[length];
+		shared = false;
+	}
+} /* end prepareContent */
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This method declares that the first <code>npoints</code> entries of
+ the arrays <code>xpoints</code> and <code>ypoints</code> have been
+ refilled in place, and records the version of the new content.
+ @param npoints The number of apices of the scale.
+ @param version The version of the new content.
+ ********************************************************************/
+public void setContent (
+	final int npoints,
+	final long version
+) {
+	this.npoints = npoints;
+	this.version = version;
+	invalidate();
+} /* end setContent */
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This method removes in place the apices that do not contribute to the
+ outline of this scale: consecutive duplicates and, if
+ <code>collinear</code> is <code>true</code>, apices lying on the
+ straight segment that joins their neighbors. The drawn outline is
+ unchanged. Closed scales are also simplified across the junction of
+ their last and first apices.
+ @param collinear Set to <code>true</code> to also remove collinear
+ apices. Set to <code>false</code> to only remove duplicates.
+ ********************************************************************/
+public void simplify (
+	final boolean collinear
+) {
+	int n = 0;
+	for (int k = 0; (k < npoints); k++) {
+		final int x = xpoints[k];
+		final int y = ypoints[k];
+		if ((0 < n) && (xpoints[n - 1] == x) && (ypoints[n - 1] == y)) {
+			continue;
+		}
+		if (collinear && (1 < n) && isStraight(xpoints[n - 2], ypoints[n - 2],
+			xpoints[n - 1], ypoints[n - 1], x, y)) {
+			n--;
+		}
+		xpoints[n] = x;
+		ypoints[n] = y;
+		n++;
+	}
+	if (closed) {
+		while ((1 < n) && (xpoints[n - 1] == xpoints[0])
+			&& (ypoints[n - 1] == ypoints[0])) {
+			n--;
+		}
+		if (collinear) {
+			while ((2 < n) && isStraight(xpoints[n - 2], ypoints[n - 2],
+				xpoints[n - 1], ypoints[n - 1], xpoints[0], ypoints[0])) {
+				n--;
+			}
+			int first = 0;
+			while ((2 < (n - first)) && isStraight(xpoints[n - 1], ypoints[n - 1],
+				xpoints[first], ypoints[first],
+				xpoints[first + 1], ypoints[first + 1])) {
+				first++;
+			}
+			if (0 < first) {
+				n -= first;
+				System.arraycopy(xpoints, first, xpoints, 0, n);
+				System.arraycopy(ypoints, first, ypoints, 0, n);
+			}
+		}
+	}
+	npoints = n;
+	invalidate();
+} /* end simplify */
+
+/*------------------------------------------------------------------*/
+/*********************************************************************
+ This method returns a scale with the same apices, colors, flags, and
+ version as this scale, which must not be modified afterwards. A scale
+ that was refilled through <code>setContent()</code> shares its arrays
+ with the snapshot, so that taking it does not depend on the number of
+ apices; the next call to <code>prepareContent()</code> gives this
+ scale arrays of its own. Other scales are copied.
+ @see #prepareContent
+ @see #setContent
+ ********************************************************************/
+public Snake2DScale snapshot (
+) {
+	final Snake2DScale scale;
+	if (version == 0L) {
+		scale = new Snake2DScale(xpoints, ypoints, npoints,
+			bestAttemptColor, currentAttemptColor, closed, filled);
+	}
+	else {
+		scale = new Snake2DScale(bestAttemptColor, currentAttemptColor,
+			closed, filled);
+		scale.xpoints = xpoints;
+		scale.ypoints = ypoints;
+		scale.npoints = npoints;
+		scale.version = version;
+		scale.shared = true;
+		shared = true;
+	}
+	return(scale);
+} /* end snapshot */
+
 /*....................................................................
 	Object methods
 ....................................................................*/
@@ -167,8 +328,28 @@ public Snake2DScale (
 		+ ", currentAttemptColor: " + currentAttemptColor
 		+ ", closed: " + closed
 		+ ", filled: " + filled
+		+ ", version: " + version
 		+ "]"
 	);
 } /* end toString */
 
+/*....................................................................
+	private methods
+....................................................................*/
+/*------------------------------------------------------------------*/
+private static boolean isStraight (
+	final int xa,
+	final int ya,
+	final int xb,
+	final int yb,
+	final int xc,
+	final int yc
+) {
+	final long dx0 = (long)xb - xa;
+	final long dy0 = (long)yb - ya;
+	final long dx1 = (long)xc - xb;
+	final long dy1 = (long)yc - yb;
+	return(((dx0 * dy1) == (dy0 * dx1)) && (0L < (dx0 * dx1 + dy0 * dy1)));
+} /* end isStraight */
+
 } /* end class Snake2DScale */
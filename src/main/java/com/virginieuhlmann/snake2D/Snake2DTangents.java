@@ -0,0 +1,20 @@
+package com.virginieuhlmann.snake2D;
+
+/**
+ * This interface is implemented by the snakes some of whose nodes are tangent
+ * vectors instead of points of the plane, such as Hermite snakes. The methods
+ * of the class <code>Snake2DKeeper</code> that transform the nodes
+ * geometrically rotate and scale such nodes, but never translate them.
+ */
+public interface Snake2DTangents {
+
+	// ============================================================================
+	// PUBLIC METHODS
+
+	/**
+	 * Returns <code>true</code> if the node of index k, in the ordering of
+	 * <code>Snake2D.getNodes()</code>, is a tangent vector, and
+	 * <code>false</code> if it is a point of the plane.
+	 */
+	public boolean isTangent(int k);
+}
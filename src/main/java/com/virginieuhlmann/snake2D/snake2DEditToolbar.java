@@ -203,12 +203,9 @@ public class snake2DEditToolbar extends Canvas implements AdjustmentListener, Mo
 		}
 		case snake2DPointAction.START: {
 			if (!(keeper.isSingleShot() || keeper.isOptimizing())) {
-				keeper.startOptimizing();
 				setTool(newTool);
 				IJ.showStatus("Optimization started");
-				synchronized (keeper) {
-					keeper.notify();
-				}
+				keeper.startOptimizing(ph);
 			} else {
 				setTool(newTool);
 				showMessage(newTool);
@@ -316,11 +313,13 @@ public class snake2DEditToolbar extends Canvas implements AdjustmentListener, Mo
 	} /* end setWindow */
 
 	/*------------------------------------------------------------------*/
-	protected void terminateInteraction(final Snake2D snake, final snake2DPointHandler ph) {
+	protected void terminateInteraction(final Snake2D[] snakes, final snake2DPointHandler ph) {
 		cleanUpListeners();
 		restorePreviousToolbar();
 		Toolbar.getInstance().repaint();
-		snake.setNodes(ph.getPoints());
+		for (int s = 0, S = snakes.length; (s < S); s++) {
+			snakes[s].setNodes(ph.getPoints(s));
+		}
 		ph.deactivateDisplay();
 	} /* end terminateInteraction */
 
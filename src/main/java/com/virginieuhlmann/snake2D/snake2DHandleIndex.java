@@ -0,0 +1,199 @@
+package com.virginieuhlmann.snake2D;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+
+/**
+ * This class indexes the handles of a point handler in a uniform grid, so that
+ * the handle closest to the mouse is found without visiting every handle. A
+ * handle that moves alone is relinked at once; after a transformation of all
+ * the handles, the grid is rebuilt at the next query. Queries do not allocate.
+ */
+/*------------------------------------------------------------------*/
+public class snake2DHandleIndex
+
+{ /* begin class snake2DHandleIndex */
+
+	/*
+	 * .................................................................... private
+	 * variables
+	 * ....................................................................
+	 */
+	private final double[] x;
+	private final double[] y;
+	private final int[] cell;
+	private final int[] next;
+	private final int[] previous;
+	private int[] head = new int[0];
+	private double x0 = 0.0;
+	private double y0 = 0.0;
+	private double cellSize = 1.0;
+	private int columns = 0;
+	private int rows = 0;
+	private boolean stale = true;
+
+	/*
+	 * ....................................................................
+	 * constructor methods
+	 * ....................................................................
+	 */
+	/*------------------------------------------------------------------*/
+	public snake2DHandleIndex(final int K) {
+		x = new double[K];
+		y = new double[K];
+		cell = new int[K];
+		next = new int[K];
+		previous = new int[K];
+	} /* end snake2DHandleIndex */
+
+	/*
+	 * ....................................................................
+	 * public methods
+	 * ....................................................................
+	 */
+	/*------------------------------------------------------------------*/
+	/**
+	 * Returns the index of the handle closest to (x, y) whose squared distance is
+	 * strictly less than distanceSq, or -1 if there is none. Among handles at the
+	 * same distance, the one with the lowest index is returned.
+	 */
+	public int findClosest(final double x, final double y, double distanceSq) {
+		if (this.x.length == 0) {
+			return (-1);
+		}
+		if (stale) {
+			rebuild();
+		}
+		final int cx = columnOf(x);
+		final int cy = rowOf(y);
+		final int R = max(max(cx, columns - 1 - cx), max(cy, rows - 1 - cy));
+		int closest = -1;
+		for (int r = 0; (r <= R); r++) {
+			final int top = cy - r;
+			final int bottom = cy + r;
+			for (int j = max(0, top), J = min(rows - 1, bottom); (j <= J); j++) {
+				final int step = ((j == top) || (j == bottom)) ? (1) : (2 * r);
+				for (int i = cx - r; (i <= (cx + r)); i += max(1, step)) {
+					if ((i < 0) || (columns <= i)) {
+						continue;
+					}
+					for (int k = head[j * columns + i]; (0 <= k); k = next[k]) {
+						final double dx = x - this.x[k];
+						final double dy = y - this.y[k];
+						final double candidateSq = dx * dx + dy * dy;
+						if ((candidateSq < distanceSq) || ((candidateSq == distanceSq) && (k < closest))) {
+							distanceSq = candidateSq;
+							closest = k;
+						}
+					}
+				}
+			}
+			final double reach = r * cellSize;
+			if (distanceSq <= (reach * reach)) {
+				break;
+			}
+		}
+		return (closest);
+	} /* end findClosest */
+
+	/*------------------------------------------------------------------*/
+	/**
+	 * Moves the k-th handle to (x, y) and relinks it in the grid.
+	 */
+	public void move(final int k, final double x, final double y) {
+		this.x[k] = x;
+		this.y[k] = y;
+		if (stale) {
+			return;
+		}
+		final int c = rowOf(y) * columns + columnOf(x);
+		if (c != cell[k]) {
+			unlink(k);
+			link(k, c);
+		}
+	} /* end move */
+
+	/*------------------------------------------------------------------*/
+	/**
+	 * Sets the location of the k-th handle. The grid is rebuilt at the next query.
+	 */
+	public void put(final int k, final double x, final double y) {
+		this.x[k] = x;
+		this.y[k] = y;
+		stale = true;
+	} /* end put */
+
+	/*
+	 * ....................................................................
+	 * private methods
+	 * ....................................................................
+	 */
+	/*------------------------------------------------------------------*/
+	private int columnOf(final double x) {
+		final int i = (int) ((x - x0) / cellSize);
+		return ((i < 0) ? (0) : ((columns <= i) ? (columns - 1) : (i)));
+	} /* end columnOf */
+
+	/*------------------------------------------------------------------*/
+	private void link(final int k, final int c) {
+		cell[k] = c;
+		previous[k] = -1;
+		next[k] = head[c];
+		if (0 <= head[c]) {
+			previous[head[c]] = k;
+		}
+		head[c] = k;
+	} /* end link */
+
+	/*------------------------------------------------------------------*/
+	private void rebuild() {
+		final int K = x.length;
+		double xMin = x[0];
+		double xMax = x[0];
+		double yMin = y[0];
+		double yMax = y[0];
+		for (int k = 1; (k < K); k++) {
+			xMin = min(xMin, x[k]);
+			xMax = max(xMax, x[k]);
+			yMin = min(yMin, y[k]);
+			yMax = max(yMax, y[k]);
+		}
+		final double width = xMax - xMin;
+		final double height = yMax - yMin;
+		cellSize = max(1.0, max(sqrt(width * height / K), max(width, height) / K));
+		x0 = xMin;
+		y0 = yMin;
+		columns = (int) (width / cellSize) + 1;
+		rows = (int) (height / cellSize) + 1;
+		if (head.length < (columns * rows)) {
+			head = new int[columns * rows];
+		}
+		for (int c = 0, C = columns * rows; (c < C); c++) {
+			head[c] = -1;
+		}
+		stale = false;
+		for (int k = K - 1; (0 <= k); k--) {
+			link(k, rowOf(y[k]) * columns + columnOf(x[k]));
+		}
+	} /* end rebuild */
+
+	/*------------------------------------------------------------------*/
+	private int rowOf(final double y) {
+		final int j = (int) ((y - y0) / cellSize);
+		return ((j < 0) ? (0) : ((rows <= j) ? (rows - 1) : (j)));
+	} /* end rowOf */
+
+	/*------------------------------------------------------------------*/
+	private void unlink(final int k) {
+		if (0 <= previous[k]) {
+			next[previous[k]] = next[k];
+		} else {
+			head[cell[k]] = next[k];
+		}
+		if (0 <= next[k]) {
+			previous[next[k]] = previous[k];
+		}
+	} /* end unlink */
+
+} /* end class snake2DHandleIndex */
@@ -128,7 +128,7 @@ public class snake2DPointAction extends ImageCanvas implements KeyListener
 				} else {
 					ph.movePoint(x, y);
 				}
-				display.setRoi(ph);
+				ph.repaintChanges();
 				keeper.destroyOptimality();
 				break;
 			}
@@ -138,7 +138,7 @@ public class snake2DPointAction extends ImageCanvas implements KeyListener
 				} else {
 					ph.stretchPoints(x, y);
 				}
-				display.setRoi(ph);
+				ph.repaintChanges();
 				keeper.destroyOptimality();
 				break;
 			}
@@ -146,7 +146,7 @@ public class snake2DPointAction extends ImageCanvas implements KeyListener
 				final double currentAngle = atan2(ph.getHullCenter().y - y, ph.getHullCenter().x - x);
 				ph.rotatePoints(currentAngle - angle);
 				angle = currentAngle;
-				display.setRoi(ph);
+				ph.repaintChanges();
 				keeper.destroyOptimality();
 				break;
 			}
@@ -289,7 +289,7 @@ public class snake2DPointAction extends ImageCanvas implements KeyListener
 			break;
 		}
 		}
-		display.setRoi(ph);
+		ph.repaintChanges();
 		updateStatus();
 	} /* end keyPressed */
 
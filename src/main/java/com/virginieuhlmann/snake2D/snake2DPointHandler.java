@@ -6,7 +6,9 @@ import ij.gui.PolygonRoi;
 import java.awt.*;
 import java.awt.geom.Point2D;
 
+import static java.lang.Math.ceil;
 import static java.lang.Math.cos;
+import static java.lang.Math.min;
 import static java.lang.Math.round;
 import static java.lang.Math.sin;
 
@@ -32,14 +34,26 @@ public class snake2DPointHandler extends PolygonRoi
 	private ImagePlus display = null;
 	private final Point2D.Double hullCenter = new Point2D.Double();
 	private final Point2D.Double[] snakeHull = new Point2D.Double[4];
+	private final Rectangle damage = new Rectangle();
 	private Snake2DKeeper keeper = null;
 	private Snake2DNode[] point = null;
-	private Snake2D snake = null;
+	private Snake2DNode[][] points = null;
+	private Polygon[][] drawn = null;
+	private Snake2DScale[][] scales = null;
+	private snake2DScaleRenderer[] renderers = null;
+	private Snake2D[] snakes = null;
+	private boolean damaged = false;
 	private boolean started = false;
 	private int closestHandle = 0;
 	private int currentPoint = 0;
+	private int currentSnake = 0;
+	private int[] first = null;
+	private int[] modifications = null;
+	private int[] owner = null;
+	private int[] updates = null;
 	private snake2DEditToolbar tb = null;
 	private snake2DPointAction pa = null;
+	private snake2DHandleIndex handles = null;
 	private static final int CROSS_HALFSIZE = 5;
 	private static final long serialVersionUID = 1L;
 
@@ -49,17 +63,39 @@ public class snake2DPointHandler extends PolygonRoi
 	 * ....................................................................
 	 */
 	/*------------------------------------------------------------------*/
-	protected snake2DPointHandler(final ImagePlus display, final Snake2D snake, final Snake2DNode[] point,
+	protected snake2DPointHandler(final ImagePlus display, final Snake2D[] snakes, final Snake2DNode[][] points,
                                   final snake2DEditToolbar tb, final Snake2DKeeper keeper) {
 		super(0, 0, display);
 		this.display = display;
-		this.snake = snake;
-		this.point = point;
+		this.snakes = snakes;
+		this.points = points;
 		this.keeper = keeper;
 		this.tb = tb;
-		if (point == null) {
-			this.point = new Snake2DNode[0];
+		final int S = snakes.length;
+		modifications = new int[S];
+		updates = new int[S];
+		drawn = new Polygon[S][];
+		scales = new Snake2DScale[S][];
+		renderers = new snake2DScaleRenderer[S];
+		first = new int[S + 1];
+		for (int s = 0; (s < S); s++) {
+			if (points[s] == null) {
+				points[s] = new Snake2DNode[0];
+			}
+			modifications[s] = 1;
+			renderers[s] = new snake2DScaleRenderer();
+			first[s + 1] = first[s] + points[s].length;
+		}
+		point = new Snake2DNode[first[S]];
+		owner = new int[first[S]];
+		for (int s = 0; (s < S); s++) {
+			for (int k = first[s], K = first[s + 1]; (k < K); k++) {
+				point[k] = points[s][k - first[s]];
+				owner[k] = s;
+			}
 		}
+		handles = new snake2DHandleIndex(this.point.length);
+		indexHandles();
 		for (int k = 0, K = snakeHull.length; (k < K); k++) {
 			snakeHull[k] = new Point2D.Double();
 		}
@@ -77,37 +113,26 @@ public class snake2DPointHandler extends PolygonRoi
 			final double mag = ic.getMagnification();
 			final int dx = (int) (mag / 2.0);
 			final int dy = (int) (mag / 2.0);
-			snake.setNodes(point);
-			final boolean snakeDied = !snake.isAlive();
+			final Rectangle clip = g.getClipBounds();
+			boolean snakeDied = false;
+			for (int s = 0, S = snakes.length; (s < S); s++) {
+				updateSnake(s);
+				snakeDied |= !snakes[s].isAlive();
+			}
 			keeper.setSnakeDied(snakeDied);
 			if (snakeDied) {
 				return;
 			}
-			Snake2DScale[] skin = snake.getScales();
-			if (skin == null) {
-				skin = new Snake2DScale[0];
-			}
-			for (int k = 0, K = skin.length; (k < K); k++) {
-				final Color scaleColor = skin[k].bestAttemptColor;
-				if (scaleColor == null) {
-					g.setColor(ROIColor);
-				} else {
-					g.setColor(scaleColor);
-				}
-				final int[] xpoints = skin[k].xpoints;
-				final int[] ypoints = skin[k].ypoints;
-				final Polygon poly = new Polygon();
-				for (int n = 0, N = skin[k].npoints; (n < N); n++) {
-					poly.addPoint(ic.screenX(xpoints[n]) + dx, ic.screenY(ypoints[n]) + dy);
-				}
-				if (skin[k].closed && skin[k].filled) {
-					g.fillPolygon(poly);
-				} else {
-					if (skin[k].closed) {
-						g.drawPolygon(poly);
+			for (int s = 0, S = snakes.length; (s < S); s++) {
+				final Snake2DScale[] skin = scales[s];
+				for (int k = 0, K = skin.length; (k < K); k++) {
+					final Color scaleColor = skin[k].bestAttemptColor;
+					if (scaleColor == null) {
+						g.setColor(ROIColor);
 					} else {
-						g.drawPolyline(poly.xpoints, poly.ypoints, poly.npoints);
+						g.setColor(scaleColor);
 					}
+					renderers[s].draw(g, ic, skin[k], k);
 				}
 			}
 			g.setColor(ROIColor);
@@ -152,6 +177,10 @@ public class snake2DPointHandler extends PolygonRoi
 			for (int k = 0, K = point.length; (k < K); k++) {
 				if (!point[k].hidden) {
 					final Point p = new Point((int) round(point[k].getX()), (int) round(point[k].getY()));
+					if ((clip != null) && !clip.intersects(ic.screenX(p.x) - CROSS_HALFSIZE,
+							ic.screenY(p.y) - CROSS_HALFSIZE, 2 * CROSS_HALFSIZE + dx, 2 * CROSS_HALFSIZE + dy)) {
+						continue;
+					}
 
 					g.setColor(Color.BLACK);
 					g.fillOval(ic.screenX(p.x) - (int) (0.5 * CROSS_HALFSIZE) - 1 + dx,
@@ -160,8 +189,18 @@ public class snake2DPointHandler extends PolygonRoi
 			}
 			if (updateFullWindow) {
 				updateFullWindow = false;
+				damaged = false;
 				display.draw();
 			}
+			if (damaged) {
+				damaged = false;
+				final int pad = (int) ceil((CROSS_HALFSIZE + 2) / mag) + 1;
+				final Rectangle changed = new Rectangle(ic.screenX(damage.x - pad), ic.screenY(damage.y - pad), 0, 0);
+				changed.add(ic.screenX(damage.x + damage.width + pad), ic.screenY(damage.y + damage.height + pad));
+				if ((clip != null) && !clip.contains(changed)) {
+					display.draw(damage.x - pad, damage.y - pad, damage.width + 2 * pad, damage.height + 2 * pad);
+				}
+			}
 		}
 	} /* end draw */
 
@@ -207,14 +246,11 @@ public class snake2DPointHandler extends PolygonRoi
 		}
 		x = ic.offScreenX(x);
 		y = ic.offScreenY(y);
-		double distanceSq = point[currentPoint].distanceSq(x, y);
-		for (int k = 0, K = point.length; (k < K); k++) {
-			final double candidateSq = point[k].distanceSq(x, y);
-			if (candidateSq < distanceSq) {
-				distanceSq = candidateSq;
-				currentPoint = k;
-			}
+		final int k = handles.findClosest(x, y, point[currentPoint].distanceSq(x, y));
+		if (0 <= k) {
+			currentPoint = k;
 		}
+		currentSnake = owner[currentPoint];
 	} /* end findClosestPoint */
 
 	/*------------------------------------------------------------------*/
@@ -228,10 +264,17 @@ public class snake2DPointHandler extends PolygonRoi
 	} /* end getPoint */
 
 	/*------------------------------------------------------------------*/
-	protected Snake2DNode[] getPoints() {
-		return (point);
+	protected Snake2DNode[] getPoints(final int s) {
+		return (points[s]);
 	} /* end getPoints */
 
+	/*------------------------------------------------------------------*/
+	protected void indexHandles() {
+		for (int k = 0, K = point.length; (k < K); k++) {
+			handles.put(k, point[k].x, point[k].y);
+		}
+	} /* end indexHandles */
+
 	/*------------------------------------------------------------------*/
 	protected void movePoint(int x, int y) {
 		if (!point[currentPoint].frozen) {
@@ -241,17 +284,39 @@ public class snake2DPointHandler extends PolygonRoi
 			x = (display.getWidth() <= x) ? (display.getWidth() - 1) : (x);
 			y = (y < 0) ? (0) : (y);
 			y = (display.getHeight() <= y) ? (display.getHeight() - 1) : (y);
+			damageNode(currentPoint);
 			point[currentPoint].setLocation(x, y);
+			handles.move(currentPoint, x, y);
+			damageNode(currentPoint);
+			modifications[owner[currentPoint]]++;
 		}
 	} /* end movePoint */
 
+	/*------------------------------------------------------------------*/
+	/**
+	 * Updates the snakes whose nodes were modified and repaints the part of the
+	 * image where their skins, their nodes, or the hull changed since they were
+	 * last drawn.
+	 */
+	protected void repaintChanges() {
+		for (int s = 0, S = snakes.length; (s < S); s++) {
+			updateSnake(s);
+		}
+		if (!damaged) {
+			return;
+		}
+		damaged = false;
+		final int pad = (int) ceil((CROSS_HALFSIZE + 2) / ic.getMagnification()) + 1;
+		display.draw(damage.x - pad, damage.y - pad, damage.width + 2 * pad, damage.height + 2 * pad);
+	} /* end repaintChanges */
+
 	/*------------------------------------------------------------------*/
 	protected void resetHull() {
 		final double mag = ic.getMagnification();
 		final int dx = (int) (mag / 2.0);
 		final int dy = (int) (mag / 2.0);
 		final Polygon poly = new Polygon();
-		for (int k = 0, K = point.length; (k < K); k++) {
+		for (int k = first[currentSnake], K = first[currentSnake + 1]; (k < K); k++) {
 			poly.addPoint(ic.screenX((int) round(point[k].getX())) + dx, ic.screenY((int) round(point[k].getY())) + dy);
 		}
 		final Rectangle bounds = poly.getBounds();
@@ -301,6 +366,8 @@ public class snake2DPointHandler extends PolygonRoi
 
 	/*------------------------------------------------------------------*/
 	protected void resizePoints(final int x, final int y) {
+		damageNodes(currentSnake);
+		damageHull();
 		double scale = 0.0;
 		switch (closestHandle) {
 		case 0: {
@@ -336,7 +403,7 @@ public class snake2DPointHandler extends PolygonRoi
 		final Rectangle srcRect = ic.getSrcRect();
 		final double x0 = hullCenter.x / mag + srcRect.x;
 		final double y0 = hullCenter.y / mag + srcRect.y;
-		for (int k = 0, K = point.length; (k < K); k++) {
+		for (int k = first[currentSnake], K = first[currentSnake + 1]; (k < K); k++) {
 			if (!point[k].frozen) {
 				point[k].setLocation(x0 + scale * (point[k].x - x0), y0 + scale * (point[k].y - y0));
 			}
@@ -345,10 +412,16 @@ public class snake2DPointHandler extends PolygonRoi
 			snakeHull[k].x = hullCenter.x + scale * (snakeHull[k].x - hullCenter.x);
 			snakeHull[k].y = hullCenter.y + scale * (snakeHull[k].y - hullCenter.y);
 		}
+		damageNodes(currentSnake);
+		damageHull();
+		indexHandles();
+		modifications[currentSnake]++;
 	} /* end resizePoints */
 
 	/*------------------------------------------------------------------*/
 	protected void rotatePoints(final double angle) {
+		damageNodes(currentSnake);
+		damageHull();
 		final double c = cos(angle);
 		final double s = sin(angle);
 		for (int k = 0, K = snakeHull.length; (k < K); k++) {
@@ -361,13 +434,17 @@ public class snake2DPointHandler extends PolygonRoi
 		final Rectangle srcRect = ic.getSrcRect();
 		final double x0 = hullCenter.x / mag + srcRect.x;
 		final double y0 = hullCenter.y / mag + srcRect.y;
-		for (int k = 0, K = point.length; (k < K); k++) {
+		for (int k = first[currentSnake], K = first[currentSnake + 1]; (k < K); k++) {
 			if (!point[k].frozen) {
 				final double x = point[k].x - x0;
 				final double y = point[k].y - y0;
 				point[k].setLocation(x * c - y * s + x0, x * s + y * c + y0);
 			}
 		}
+		damageNodes(currentSnake);
+		damageHull();
+		indexHandles();
+		modifications[currentSnake]++;
 	} /* end rotatePoints */
 
 	/*------------------------------------------------------------------*/
@@ -375,8 +452,24 @@ public class snake2DPointHandler extends PolygonRoi
 		this.pa = pa;
 	} /* end setPointAction */
 
+	/*------------------------------------------------------------------*/
+	/**
+	 * Moves the nodes of the s-th snake to the locations of the given nodes.
+	 */
+	protected void setPoints(final int s, final Snake2DNode[] nodes) {
+		damageNodes(s);
+		for (int k = 0, K = min(nodes.length, points[s].length); (k < K); k++) {
+			points[s][k].setLocation(nodes[k].x, nodes[k].y);
+		}
+		indexHandles();
+		damageNodes(s);
+		modifications[s]++;
+	} /* end setPoints */
+
 	/*------------------------------------------------------------------*/
 	protected void stretchPoints(final int x, final int y) {
+		damageNodes(currentSnake);
+		damageHull();
 		final double mag = ic.getMagnification();
 		final Rectangle srcRect = ic.getSrcRect();
 		switch (closestHandle) {
@@ -386,7 +479,7 @@ public class snake2DPointHandler extends PolygonRoi
 			}
 			final double scale = ((y - snakeHull[2].y) / (snakeHull[1].y - snakeHull[2].y));
 			final double y0 = snakeHull[2].y / mag + srcRect.y;
-			for (int k = 0, K = point.length; (k < K); k++) {
+			for (int k = first[currentSnake], K = first[currentSnake + 1]; (k < K); k++) {
 				if (!point[k].frozen) {
 					point[k].setLocation(point[k].x, y0 + scale * (point[k].y - y0));
 				}
@@ -401,7 +494,7 @@ public class snake2DPointHandler extends PolygonRoi
 			}
 			final double scale = ((x - snakeHull[0].x) / (snakeHull[1].x - snakeHull[0].x));
 			final double x0 = snakeHull[0].x / mag + srcRect.x;
-			for (int k = 0, K = point.length; (k < K); k++) {
+			for (int k = first[currentSnake], K = first[currentSnake + 1]; (k < K); k++) {
 				if (!point[k].frozen) {
 					point[k].setLocation(x0 + scale * (point[k].x - x0), point[k].y);
 				}
@@ -416,7 +509,7 @@ public class snake2DPointHandler extends PolygonRoi
 			}
 			final double scale = ((y - snakeHull[1].y) / (snakeHull[2].y - snakeHull[1].y));
 			final double y0 = snakeHull[1].y / mag + srcRect.y;
-			for (int k = 0, K = point.length; (k < K); k++) {
+			for (int k = first[currentSnake], K = first[currentSnake + 1]; (k < K); k++) {
 				if (!point[k].frozen) {
 					point[k].setLocation(point[k].x, y0 + scale * (point[k].y - y0));
 				}
@@ -431,7 +524,7 @@ public class snake2DPointHandler extends PolygonRoi
 			}
 			final double scale = ((x - snakeHull[1].x) / (snakeHull[0].x - snakeHull[1].x));
 			final double x0 = snakeHull[1].x / mag + srcRect.x;
-			for (int k = 0, K = point.length; (k < K); k++) {
+			for (int k = first[currentSnake], K = first[currentSnake + 1]; (k < K); k++) {
 				if (!point[k].frozen) {
 					point[k].setLocation(x0 + scale * (point[k].x - x0), point[k].y);
 				}
@@ -441,17 +534,151 @@ public class snake2DPointHandler extends PolygonRoi
 			break;
 		}
 		}
+		damageNodes(currentSnake);
+		damageHull();
+		indexHandles();
+		modifications[currentSnake]++;
 	} /* end stretchPoints */
 
 	/*------------------------------------------------------------------*/
 	protected void translatePoints(int dx, int dy) {
+		damageNodes(currentSnake);
 		dx = (int) round(dx / ic.getMagnification());
 		dy = (int) round(dy / ic.getMagnification());
-		for (int k = 0, K = point.length; (k < K); k++) {
+		for (int k = first[currentSnake], K = first[currentSnake + 1]; (k < K); k++) {
 			if (!point[k].frozen) {
 				point[k].setLocation(point[k].x + dx, point[k].y + dy);
 			}
 		}
+		damageNodes(currentSnake);
+		indexHandles();
+		modifications[currentSnake]++;
 	} /* end translatePoints */
 
+	/*
+	 * ....................................................................
+	 * private methods
+	 * ....................................................................
+	 */
+	/*------------------------------------------------------------------*/
+	private void damage(final int x, final int y) {
+		if (damaged) {
+			damage.add(x, y);
+		} else {
+			damage.setBounds(x, y, 0, 0);
+			damaged = true;
+		}
+	} /* end damage */
+
+	/*------------------------------------------------------------------*/
+	private void damageHull() {
+		for (int k = 0, K = snakeHull.length; (k < K); k++) {
+			damage(ic.offScreenX((int) round(snakeHull[k].x)), ic.offScreenY((int) round(snakeHull[k].y)));
+		}
+	} /* end damageHull */
+
+	/*------------------------------------------------------------------*/
+	private void damageNode(final int k) {
+		damage((int) round(point[k].x), (int) round(point[k].y));
+	} /* end damageNode */
+
+	/*------------------------------------------------------------------*/
+	private void damageNodes(final int s) {
+		for (int k = first[s], K = first[s + 1]; (k < K); k++) {
+			damageNode(k);
+		}
+	} /* end damageNodes */
+
+	/*------------------------------------------------------------------*/
+	/**
+	 * Adds the points of p from the index from - 1 to the index to, both
+	 * included, so that the edges joining the changed points to the unchanged
+	 * ones are covered.
+	 */
+	private void damagePoints(final Polygon p, final int from, final int to) {
+		final int N = p.npoints;
+		if (N == 0) {
+			return;
+		}
+		for (int n = from - 1; (n <= to); n++) {
+			final int m = (n + N) % N;
+			damage(p.xpoints[m], p.ypoints[m]);
+		}
+	} /* end damagePoints */
+
+	/*------------------------------------------------------------------*/
+	/**
+	 * Compares the polygon drawn previously with the current one, adds the
+	 * points that differ to the damaged region, and makes the previous polygon a
+	 * copy of the current one. The points that differ lie between the longest
+	 * common prefix and the longest common suffix of the two polygons, which
+	 * spans the support of the nodes that moved.
+	 */
+	private void damagePolygon(final Polygon previous, final Polygon current) {
+		final int M = previous.npoints;
+		final int N = current.npoints;
+		final int L = min(M, N);
+		int head = 0;
+		while ((head < L) && (previous.xpoints[head] == current.xpoints[head])
+				&& (previous.ypoints[head] == current.ypoints[head])) {
+			head++;
+		}
+		if ((head == M) && (M == N)) {
+			return;
+		}
+		int tail = 0;
+		while ((tail < (L - head)) && (previous.xpoints[M - 1 - tail] == current.xpoints[N - 1 - tail])
+				&& (previous.ypoints[M - 1 - tail] == current.ypoints[N - 1 - tail])) {
+			tail++;
+		}
+		damagePoints(previous, head, M - tail);
+		damagePoints(current, head, N - tail);
+		if (previous.xpoints.length < N) {
+			previous.xpoints = new int[N];
+			previous.ypoints = new int[N];
+		}
+		System.arraycopy(current.xpoints, 0, previous.xpoints, 0, N);
+		System.arraycopy(current.ypoints, 0, previous.ypoints, 0, N);
+		previous.npoints = N;
+		previous.invalidate();
+	} /* end damagePolygon */
+
+	/*------------------------------------------------------------------*/
+	private void damageScales(final int s) {
+		final Snake2DScale[] skin = scales[s];
+		if ((drawn[s] == null) || (drawn[s].length != skin.length)) {
+			if (drawn[s] != null) {
+				for (int k = 0, K = drawn[s].length; (k < K); k++) {
+					damagePoints(drawn[s][k], 0, drawn[s][k].npoints);
+				}
+			}
+			drawn[s] = new Polygon[skin.length];
+			for (int k = 0, K = skin.length; (k < K); k++) {
+				drawn[s][k] = new Polygon();
+			}
+		}
+		for (int k = 0, K = skin.length; (k < K); k++) {
+			damagePolygon(drawn[s][k], skin[k]);
+		}
+	} /* end damageScales */
+
+	/*------------------------------------------------------------------*/
+	/**
+	 * Pushes the nodes of the s-th snake and fetches its scales, but only if the
+	 * nodes were modified since they were last pushed, so that a repaint that is
+	 * not caused by an edit costs only the drawing.
+	 */
+	private void updateSnake(final int s) {
+		if (updates[s] == modifications[s]) {
+			return;
+		}
+		updates[s] = modifications[s];
+		snakes[s].setNodes(points[s]);
+		scales[s] = snakes[s].getScales();
+		if (scales[s] == null) {
+			scales[s] = new Snake2DScale[0];
+		}
+		damageScales(s);
+	} /* end updateSnake */
+
 } /* end class snake2DPointHandler */
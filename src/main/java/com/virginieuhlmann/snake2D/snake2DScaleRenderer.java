@@ -0,0 +1,211 @@
+package com.virginieuhlmann.snake2D;
+
+import ij.gui.ImageCanvas;
+
+import java.awt.Graphics;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+
+import static java.lang.Math.ceil;
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * This class draws the scales of a skin on an image canvas. When the
+ * magnification is below one, consecutive points that fall on the same screen
+ * pixel are merged; the merged scales are kept until their version or the
+ * magnification changes. Outlines are clipped to the part of the image that is
+ * shown, so that only the segments that may be seen are transformed and drawn.
+ * The scales are identified by their index, and one renderer should be used for
+ * each skin.
+ */
+/*------------------------------------------------------------------*/
+public class snake2DScaleRenderer
+
+{ /* begin class snake2DScaleRenderer */
+
+	/*
+	 * .................................................................... private
+	 * variables
+	 * ....................................................................
+	 */
+	private Polygon[] decimated = new Polygon[0];
+	private double[] magnifications = new double[0];
+	private long[] versions = new long[0];
+	private int[] xpoints = new int[0];
+	private int[] ypoints = new int[0];
+	private int viewX0 = 0;
+	private int viewX1 = 0;
+	private int viewY0 = 0;
+	private int viewY1 = 0;
+
+	/*
+	 * .................................................................... public
+	 * methods ....................................................................
+	 */
+	/*------------------------------------------------------------------*/
+	/**
+	 * Draws the k-th scale of the skin with the current color of g.
+	 */
+	public void draw(final Graphics g, final ImageCanvas ic, final Snake2DScale scale, final int k) {
+		final double mag = ic.getMagnification();
+		final int dx = (int) (mag / 2.0);
+		final int dy = (int) (mag / 2.0);
+		final Polygon p = (mag < 1.0) ? (decimate(scale, k, mag)) : (scale);
+		final int N = p.npoints;
+		if (N == 0) {
+			return;
+		}
+		setView(g, ic, mag);
+		final Rectangle bounds = p.getBounds();
+		if (!isVisible(bounds.x, bounds.y, bounds.x + bounds.width, bounds.y + bounds.height)) {
+			return;
+		}
+		if (xpoints.length < N) {
+			xpoints = new int[N];
+			ypoints = new int[N];
+		}
+		if ((scale.closed && scale.filled) || (N == 1)) {
+			for (int n = 0; (n < N); n++) {
+				xpoints[n] = ic.screenX(p.xpoints[n]) + dx;
+				ypoints[n] = ic.screenY(p.ypoints[n]) + dy;
+			}
+			if (scale.closed && scale.filled) {
+				g.fillPolygon(xpoints, ypoints, N);
+			} else {
+				if (scale.closed) {
+					g.drawPolygon(xpoints, ypoints, N);
+				} else {
+					g.drawPolyline(xpoints, ypoints, N);
+				}
+			}
+			return;
+		}
+		int start = -1;
+		for (int n = 0; (n < N); n++) {
+			if (!isSegmentVisible(p, n, scale.closed)) {
+				start = n;
+				break;
+			}
+		}
+		if (start < 0) {
+			for (int n = 0; (n < N); n++) {
+				xpoints[n] = ic.screenX(p.xpoints[n]) + dx;
+				ypoints[n] = ic.screenY(p.ypoints[n]) + dy;
+			}
+			if (scale.closed) {
+				g.drawPolygon(xpoints, ypoints, N);
+			} else {
+				g.drawPolyline(xpoints, ypoints, N);
+			}
+			return;
+		}
+		int M = 0;
+		for (int m = 1; (m <= N); m++) {
+			final int n = (start + m) % N;
+			if (isSegmentVisible(p, n, scale.closed)) {
+				if (M == 0) {
+					xpoints[M] = ic.screenX(p.xpoints[n]) + dx;
+					ypoints[M] = ic.screenY(p.ypoints[n]) + dy;
+					M++;
+				}
+				xpoints[M] = ic.screenX(p.xpoints[(n + 1) % N]) + dx;
+				ypoints[M] = ic.screenY(p.ypoints[(n + 1) % N]) + dy;
+				M++;
+			} else if (0 < M) {
+				g.drawPolyline(xpoints, ypoints, M);
+				M = 0;
+			}
+		}
+		if (0 < M) {
+			g.drawPolyline(xpoints, ypoints, M);
+		}
+	} /* end draw */
+
+	/*
+	 * .................................................................... private
+	 * methods ....................................................................
+	 */
+	/*------------------------------------------------------------------*/
+	private Polygon decimate(final Snake2DScale scale, final int k, final double mag) {
+		if (decimated.length <= k) {
+			final int K = max(k + 1, 2 * decimated.length);
+			final Polygon[] polygons = new Polygon[K];
+			System.arraycopy(decimated, 0, polygons, 0, decimated.length);
+			decimated = polygons;
+			final double[] m = new double[K];
+			System.arraycopy(magnifications, 0, m, 0, magnifications.length);
+			magnifications = m;
+			final long[] v = new long[K];
+			System.arraycopy(versions, 0, v, 0, versions.length);
+			versions = v;
+		}
+		if (decimated[k] == null) {
+			decimated[k] = new Polygon();
+		}
+		final Polygon d = decimated[k];
+		final long version = scale.getVersion();
+		if ((version != 0L) && (versions[k] == version) && (magnifications[k] == mag)) {
+			return (d);
+		}
+		final int N = scale.npoints;
+		if (d.xpoints.length < N) {
+			d.xpoints = new int[N];
+			d.ypoints = new int[N];
+		}
+		int M = 0;
+		int x = 0;
+		int y = 0;
+		for (int n = 0; (n < N); n++) {
+			final int cx = (int) floor(scale.xpoints[n] * mag);
+			final int cy = (int) floor(scale.ypoints[n] * mag);
+			if ((M == 0) || (cx != x) || (cy != y)) {
+				d.xpoints[M] = scale.xpoints[n];
+				d.ypoints[M] = scale.ypoints[n];
+				M++;
+				x = cx;
+				y = cy;
+			}
+		}
+		d.npoints = M;
+		d.invalidate();
+		versions[k] = version;
+		magnifications[k] = mag;
+		return (d);
+	} /* end decimate */
+
+	/*------------------------------------------------------------------*/
+	private boolean isSegmentVisible(final Polygon p, final int n, final boolean closed) {
+		final int N = p.npoints;
+		if (!closed && (n == (N - 1))) {
+			return (false);
+		}
+		final int m = (n + 1) % N;
+		return (isVisible(min(p.xpoints[n], p.xpoints[m]), min(p.ypoints[n], p.ypoints[m]),
+				max(p.xpoints[n], p.xpoints[m]), max(p.ypoints[n], p.ypoints[m])));
+	} /* end isSegmentVisible */
+
+	/*------------------------------------------------------------------*/
+	private boolean isVisible(final int x0, final int y0, final int x1, final int y1) {
+		return ((x0 <= viewX1) && (viewX0 <= x1) && (y0 <= viewY1) && (viewY0 <= y1));
+	} /* end isVisible */
+
+	/*------------------------------------------------------------------*/
+	private void setView(final Graphics g, final ImageCanvas ic, final double mag) {
+		final int margin = (int) ceil(2.0 / mag) + 1;
+		final Rectangle srcRect = ic.getSrcRect();
+		viewX0 = srcRect.x - margin;
+		viewY0 = srcRect.y - margin;
+		viewX1 = srcRect.x + srcRect.width + margin;
+		viewY1 = srcRect.y + srcRect.height + margin;
+		final Rectangle clip = g.getClipBounds();
+		if (clip != null) {
+			viewX0 = max(viewX0, ic.offScreenX(clip.x) - margin);
+			viewY0 = max(viewY0, ic.offScreenY(clip.y) - margin);
+			viewX1 = min(viewX1, ic.offScreenX(clip.x + clip.width) + margin);
+			viewY1 = min(viewY1, ic.offScreenY(clip.y + clip.height) + margin);
+		}
+	} /* end setView */
+
+} /* end class snake2DScaleRenderer */
@@ -33,9 +33,12 @@ public class snake2DSkinHandler extends PolygonRoi
 	 */
 	private ImagePlus display = null;
 	private Snake2DKeeper keeper = null;
-	private Snake2DScale[] bestSkin = null;
+	private volatile Snake2DScale[] bestSkin = null;
+	private volatile Snake2DScale[] skin = null;
 	private Snake2D snake = null;
 	private boolean started = false;
+	private final snake2DScaleRenderer bestSkinRenderer = new snake2DScaleRenderer();
+	private final snake2DScaleRenderer skinRenderer = new snake2DScaleRenderer();
 
 	/*
 	 * ....................................................................
@@ -64,13 +67,11 @@ public class snake2DSkinHandler extends PolygonRoi
 			if (snakeDied) {
 				return;
 			}
-			Snake2DScale[] skin = snake.getScales();
+			final Snake2DScale[] bestSkin = this.bestSkin;
+			Snake2DScale[] skin = this.skin;
 			if (skin == null) {
 				skin = new Snake2DScale[0];
 			}
-			final double mag = ic.getMagnification();
-			final int dx = (int) (mag / 2.0);
-			final int dy = (int) (mag / 2.0);
 			for (int k = 0, K = skin.length; (k < K); k++) {
 				Color scaleColor = skin[k].currentAttemptColor;
 				if (scaleColor == null) {
@@ -94,21 +95,7 @@ public class snake2DSkinHandler extends PolygonRoi
 						g.setColor(scaleColor);
 					}
 				}
-				final int[] xpoints = skin[k].xpoints;
-				final int[] ypoints = skin[k].ypoints;
-				final Polygon poly = new Polygon();
-				for (int n = 0, N = skin[k].npoints; (n < N); n++) {
-					poly.addPoint(ic.screenX(xpoints[n]) + dx, ic.screenY(ypoints[n]) + dy);
-				}
-				if (skin[k].closed && skin[k].filled) {
-					g.fillPolygon(poly);
-				} else {
-					if (skin[k].closed) {
-						g.drawPolygon(poly);
-					} else {
-						g.drawPolyline(poly.xpoints, poly.ypoints, poly.npoints);
-					}
-				}
+				skinRenderer.draw(g, ic, skin[k], k);
 			}
 			if (bestSkin != null) {
 				for (int k = 0, K = bestSkin.length; (k < K); k++) {
@@ -118,21 +105,7 @@ public class snake2DSkinHandler extends PolygonRoi
 					} else {
 						g.setColor(scaleColor);
 					}
-					final int[] xpoints = bestSkin[k].xpoints;
-					final int[] ypoints = bestSkin[k].ypoints;
-					final Polygon poly = new Polygon();
-					for (int n = 0, N = bestSkin[k].npoints; (n < N); n++) {
-						poly.addPoint(ic.screenX(xpoints[n]) + dx, ic.screenY(ypoints[n]) + dy);
-					}
-					if (bestSkin[k].closed && bestSkin[k].filled) {
-						g.fillPolygon(poly);
-					} else {
-						if (bestSkin[k].closed) {
-							g.drawPolygon(poly);
-						} else {
-							g.drawPolyline(poly.xpoints, poly.ypoints, poly.npoints);
-						}
-					}
+					bestSkinRenderer.draw(g, ic, bestSkin[k], k);
 				}
 			}
 			if (updateFullWindow) {
@@ -160,19 +133,39 @@ public class snake2DSkinHandler extends PolygonRoi
 	} /* end deactivateDisplay */
 
 	/*------------------------------------------------------------------*/
+	/*********************************************************************
+	 * Keeps a snapshot of the skin. The snapshots share the apices of the scales
+	 * until the snake refills them, so that the cost does not depend on the number
+	 * of apices, and they are published at once to the thread that draws them.
+	 ********************************************************************/
 	protected void setBestSkin(final Snake2DScale[] bestSkin) {
-		if (bestSkin == null) {
-			this.bestSkin = null;
-			return;
+		this.bestSkin = snapshot(bestSkin);
+	} /* end setBestSkin */
+
+	/*------------------------------------------------------------------*/
+	/*********************************************************************
+	 * Keeps a snapshot of the skin being currently examined. The snake itself is
+	 * never read by the thread that draws the skins.
+	 ********************************************************************/
+	protected void setSkin(final Snake2DScale[] skin) {
+		this.skin = snapshot(skin);
+	} /* end setSkin */
+
+	/*
+	 * ....................................................................
+	 * private methods
+	 * ....................................................................
+	 */
+	/*------------------------------------------------------------------*/
+	private static Snake2DScale[] snapshot(final Snake2DScale[] skin) {
+		if (skin == null) {
+			return (null);
 		}
-		this.bestSkin = new Snake2DScale[bestSkin.length];
-		for (int k = 0, K = bestSkin.length; (k < K); k++) {
-			this.bestSkin[k] = new Snake2DScale(bestSkin[k].bestAttemptColor, bestSkin[k].currentAttemptColor,
-					bestSkin[k].closed, bestSkin[k].filled);
-			for (int n = 0, N = bestSkin[k].npoints; (n < N); n++) {
-				this.bestSkin[k].addPoint(bestSkin[k].xpoints[n], bestSkin[k].ypoints[n]);
-			}
+		final Snake2DScale[] snapshot = new Snake2DScale[skin.length];
+		for (int k = 0, K = skin.length; (k < K); k++) {
+			snapshot[k] = skin[k].snapshot();
 		}
-	} /* end setBestSkin */
+		return (snapshot);
+	} /* end snapshot */
 
 } /* end class snake2DSkinHandler */